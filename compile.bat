@@ -3,7 +3,7 @@ echo Compiling Assessment Feedback System...
 
 if not exist "bin" mkdir bin
 
-javac -d bin src\utils\*.java src\common\*.java src\admin\*.java src\leader\*.java src\lecturer\*.java src\student\*.java src\Main.java
+javac -d bin src\utils\*.java src\common\*.java src\admin\*.java src\leader\*.java src\lecturer\*.java src\student\*.java src\Main.java src\ReportRunner.java
 
 if %ERRORLEVEL% EQU 0 (
     echo.
@@ -5,7 +5,7 @@ if [ ! -d "bin" ]; then
     mkdir bin
 fi
 
-javac -d bin src/utils/*.java src/common/*.java src/admin/*.java src/leader/*.java src/lecturer/*.java src/student/*.java src/Main.java
+javac -d bin src/utils/*.java src/common/*.java src/admin/*.java src/leader/*.java src/lecturer/*.java src/student/*.java src/Main.java src/ReportRunner.java
 
 if [ $? -eq 0 ]; then
     echo ""
@@ -1,5 +1,7 @@
 import common.LoginFrame;
 import utils.DataSeeder;
+import utils.DataWatcher;
+import utils.ResultAggregates;
 
 import javax.swing.*;
 
@@ -13,6 +15,8 @@ public class Main {
             }
             
             DataSeeder.seedIfEmpty();
+            ResultAggregates.init();
+            DataWatcher.start();
             new LoginFrame().setVisible(true);
         });
     }
@@ -0,0 +1,243 @@
+import utils.FileHandler;
+import utils.MarkStatistics;
+import utils.ReportService;
+import utils.Transcripts;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+// Generates module reports without starting the GUI, e.g. as a nightly job on a server:
+//
+//   java -cp bin ReportRunner [--leader <id>] [--modules MOD001,MOD002] [--format csv,json,html] [--out reports]
+//                             [--transcripts]
+//
+// Run it from the project directory like Main, so that data/ is found. Without --leader or
+// --modules every module is reported. The statistics are the ones the dashboards show and
+// come from the same ReportService. --transcripts also writes every student's transcript
+// to a CSV file.
+public class ReportRunner {
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+
+        String leaderId = null;
+        Set<String> moduleIds = null;
+        Set<String> formats = new LinkedHashSet<>(Arrays.asList("csv", "json", "html"));
+        File outDir = new File("reports");
+        boolean transcripts = false;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--leader":
+                        leaderId = args[++i];
+                        break;
+                    case "--modules":
+                        moduleIds = new LinkedHashSet<>(Arrays.asList(args[++i].split(",")));
+                        break;
+                    case "--format":
+                        formats = new LinkedHashSet<>(Arrays.asList(args[++i].toLowerCase().split(",")));
+                        break;
+                    case "--out":
+                        outDir = new File(args[++i]);
+                        break;
+                    case "--transcripts":
+                        transcripts = true;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i]);
+                }
+            }
+            for (String format : formats) {
+                if (!format.equals("csv") && !format.equals("json") && !format.equals("html")) {
+                    throw new IllegalArgumentException("Unknown format " + format);
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof IllegalArgumentException ? e.getMessage() : "Missing option value");
+            System.err.println("Usage: java -cp bin ReportRunner [--leader <id>] [--modules MOD001,MOD002] "
+                + "[--format csv,json,html] [--out <dir>] [--transcripts]");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        List<String[]> modules = new ArrayList<>();
+        Set<String> found = new HashSet<>();
+        for (String[] module : FileHandler.getAllRecords("modules.txt")) {
+            if (module.length < 2) continue;
+            if (leaderId != null && (module.length < 4 || !module[3].equals(leaderId))) continue;
+            if (moduleIds != null && !moduleIds.contains(module[0])) continue;
+            modules.add(module);
+            found.add(module[0]);
+        }
+        if (moduleIds != null) {
+            for (String id : moduleIds) {
+                if (!found.contains(id)) System.err.println("Warning: module " + id + " not found");
+            }
+        }
+        long selected = System.nanoTime();
+        System.out.printf("Selected %d modules in %d ms%n", modules.size(), millis(start, selected));
+
+        List<ReportService.ModuleSummary> summaries = ReportService.summarize(modules, null);
+        long computed = System.nanoTime();
+        long results = 0;
+        for (ReportService.ModuleSummary summary : summaries) results += summary.statistics.count();
+        System.out.printf("Computed statistics over %d results in %d ms%n", results, millis(selected, computed));
+
+        outDir.mkdirs();
+        String generated = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        String base = "report-" + LocalDateTime.now().format(FILE_TIME);
+        boolean failed = false;
+        for (String format : formats) {
+            long writeStart = System.nanoTime();
+            File file = new File(outDir, base + "." + format);
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                if (format.equals("csv")) writeCsv(writer, summaries);
+                else if (format.equals("json")) writeJson(writer, summaries, generated);
+                else writeHtml(writer, summaries, generated);
+            } catch (IOException e) {
+                e.printStackTrace();
+                failed = true;
+                continue;
+            }
+            System.out.printf("Wrote %s in %d ms%n", file.getPath(), millis(writeStart, System.nanoTime()));
+        }
+        if (transcripts) {
+            long transcriptStart = System.nanoTime();
+            List<String> students = new ArrayList<>();
+            for (String[] user : FileHandler.getAllRecords("users.txt")) {
+                if (user.length >= 3 && user[2].equals("Student")) students.add(user[0]);
+            }
+            Map<String, Transcripts.Transcript> all = Transcripts.forStudents(students);
+            System.out.printf("Built %d transcripts in %d ms%n", all.size(), millis(transcriptStart, System.nanoTime()));
+            File file = new File(outDir, "transcripts-" + base.substring("report-".length()) + ".csv");
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                writeTranscripts(writer, all.values());
+                System.out.printf("Wrote %s%n", file.getPath());
+            } catch (IOException e) {
+                e.printStackTrace();
+                failed = true;
+            }
+        }
+        System.out.printf("Done in %d ms%n", millis(start, System.nanoTime()));
+        if (failed) System.exit(1);
+    }
+
+    private static long millis(long from, long to) {
+        return (to - from) / 1_000_000;
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+
+    private static String grades(ReportService.ModuleSummary summary, String separator) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : summary.gradeCounts.entrySet()) {
+            if (sb.length() > 0) sb.append(separator);
+            sb.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    private static void writeCsv(Writer writer, List<ReportService.ModuleSummary> summaries) throws IOException {
+        writer.write("Module ID,Module Name,Lecturer ID,Assessments,Results,Average,Std Dev,Min,Max,"
+            + "Median,Q1,Q3,P90,Pass,Fail,Pass %,Grades\n");
+        for (ReportService.ModuleSummary s : summaries) {
+            MarkStatistics stats = s.statistics;
+            writer.write(String.join(",", csv(s.moduleId), csv(s.moduleName), csv(s.lecturerId),
+                String.valueOf(s.assessments), String.valueOf(stats.count()), number(stats.mean()),
+                number(stats.stddev()), number(stats.min()), number(stats.max()), number(stats.median()),
+                number(stats.quantile(0.25)), number(stats.quantile(0.75)), number(stats.quantile(0.9)),
+                String.valueOf(stats.passCount()), String.valueOf(stats.failCount()), number(s.passRate()),
+                csv(grades(s, ";"))));
+            writer.write("\n");
+        }
+    }
+
+    private static void writeTranscripts(Writer writer, Collection<Transcripts.Transcript> transcripts) throws IOException {
+        writer.write("Student ID,GPA,Module ID,Module Name,Assessments Done,Assessments,Final %,Grade,Grade Points\n");
+        for (Transcripts.Transcript t : transcripts) {
+            String gpa = Double.isNaN(t.gpa) ? "" : number(t.gpa);
+            for (Transcripts.ModuleLine line : t.modules) {
+                boolean graded = line.grade != null;
+                writer.write(String.join(",", csv(t.studentId), gpa, csv(line.moduleId), csv(line.moduleName),
+                    String.valueOf(line.completed), String.valueOf(line.assessments),
+                    graded ? number(line.percentage) : "", graded ? csv(line.grade) : "",
+                    Double.isNaN(line.points) ? "" : number(line.points)));
+                writer.write("\n");
+            }
+        }
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static void writeJson(Writer writer, List<ReportService.ModuleSummary> summaries, String generated) throws IOException {
+        writer.write("{\n  \"generated\": " + json(generated) + ",\n  \"modules\": [");
+        for (int i = 0; i < summaries.size(); i++) {
+            ReportService.ModuleSummary s = summaries.get(i);
+            MarkStatistics stats = s.statistics;
+            writer.write(i == 0 ? "\n" : ",\n");
+            writer.write("    {\"moduleId\": " + json(s.moduleId) + ", \"moduleName\": " + json(s.moduleName)
+                + ", \"lecturerId\": " + json(s.lecturerId) + ", \"assessments\": " + s.assessments
+                + ", \"results\": " + stats.count() + ", \"mean\": " + number(stats.mean())
+                + ", \"stdDev\": " + number(stats.stddev()) + ", \"min\": " + number(stats.min())
+                + ", \"max\": " + number(stats.max()) + ", \"median\": " + number(stats.median())
+                + ", \"q1\": " + number(stats.quantile(0.25)) + ", \"q3\": " + number(stats.quantile(0.75))
+                + ", \"p90\": " + number(stats.quantile(0.9)) + ", \"pass\": " + stats.passCount()
+                + ", \"fail\": " + stats.failCount() + ", \"passRate\": " + number(s.passRate()) + ", \"grades\": {");
+            boolean first = true;
+            for (Map.Entry<String, Long> entry : s.gradeCounts.entrySet()) {
+                if (!first) writer.write(", ");
+                writer.write(json(entry.getKey()) + ": " + entry.getValue());
+                first = false;
+            }
+            writer.write("}}");
+        }
+        writer.write("\n  ]\n}\n");
+    }
+
+    private static String json(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    private static void writeHtml(Writer writer, List<ReportService.ModuleSummary> summaries, String generated) throws IOException {
+        writer.write("<!DOCTYPE html>\n<html><head><meta charset=\"UTF-8\"><title>Module Report</title>\n"
+            + "<style>body{font-family:Arial,sans-serif}table{border-collapse:collapse}"
+            + "th{background:#2980b9;color:#fff}th,td{padding:4px 8px;border:1px solid #ddd;text-align:left}</style>\n"
+            + "</head><body>\n<h2>Module Report</h2>\n<p>Generated " + html(generated) + "</p>\n<table>\n<tr>");
+        for (String column : new String[]{"Module ID", "Module Name", "Lecturer ID", "Assessments", "Results",
+                "Average", "Std Dev", "Min", "Max", "Median", "Q1", "Q3", "P90", "Pass", "Fail", "Pass %", "Grades"}) {
+            writer.write("<th>" + column + "</th>");
+        }
+        writer.write("</tr>\n");
+        for (ReportService.ModuleSummary s : summaries) {
+            MarkStatistics stats = s.statistics;
+            String[] cells = {s.moduleId, s.moduleName, s.lecturerId, String.valueOf(s.assessments),
+                String.valueOf(stats.count()), number(stats.mean()), number(stats.stddev()), number(stats.min()),
+                number(stats.max()), number(stats.median()), number(stats.quantile(0.25)),
+                number(stats.quantile(0.75)), number(stats.quantile(0.9)), String.valueOf(stats.passCount()),
+                String.valueOf(stats.failCount()), number(s.passRate()), grades(s, ", ")};
+            writer.write("<tr>");
+            for (String cell : cells) writer.write("<td>" + html(cell) + "</td>");
+            writer.write("</tr>\n");
+        }
+        writer.write("</table>\n</body></html>\n");
+    }
+
+    private static String html(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
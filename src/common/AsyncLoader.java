@@ -0,0 +1,211 @@
+package common;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Fills dashboard tables without blocking the Event Dispatch Thread. The rows are read on a
+// background thread and handed to the table model on the EDT in batches, so a large file
+// shows up as it is read and the window stays responsive meanwhile. While a load is running
+// the title of the tab holding the table says so; if it fails, the title says that instead
+// until the next load, and a table model gets a row with the error.
+//
+// Starting a new load for a table supersedes one still running: the model is cleared and the
+// old load's remaining rows are dropped. Loads started for tabs the user has not opened yet
+// (see LazyTabs) run one at a time on a low-priority thread.
+public class AsyncLoader {
+    private static final int BATCH_SIZE = 500;
+    private static final String LOADING = " (loading...)";
+    private static final String FAILED = " (failed to load)";
+
+    private static final AtomicInteger threads = new AtomicInteger();
+    private static final ExecutorService executor = Executors.newFixedThreadPool(
+        Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread t = new Thread(r, "data-loader-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    private static final ExecutorService background = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "data-prefetch");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        return t;
+    });
+
+    // Only touched on the EDT
+    private static final Map<Object, Object> current = new WeakHashMap<>();
+    private static final Map<Component, Integer> pending = new WeakHashMap<>();
+    private static final Map<Component, String> titles = new WeakHashMap<>();
+    private static final Map<Component, Exception> errors = new WeakHashMap<>();
+    private static boolean prefetching;
+
+    // Produces the rows of a table on the loader thread, passing each one to rows.
+    public interface Loader {
+        void load(Consumer<Object[]> rows) throws Exception;
+    }
+
+    private AsyncLoader() {
+    }
+
+    // Runs start on the EDT, sending the loads it starts to the low-priority thread.
+    public static void prefetch(Runnable start) {
+        prefetching = true;
+        try {
+            start.run();
+        } finally {
+            prefetching = false;
+        }
+    }
+
+    private static ExecutorService executor() {
+        return prefetching ? background : executor;
+    }
+
+    // Clears the model and refills it from loader. component is anything inside the tab (usually
+    // the table) whose title shows the loading state. done runs on the EDT after the last row
+    // has been added, unless the load failed or was superseded. Must be called on the EDT.
+    public static void load(Component component, DefaultTableModel model, Loader loader, Runnable done) {
+        Object token = new Object();
+        current.put(model, token);
+        model.setRowCount(0);
+        Component tab = started(component);
+        executor().execute(() -> {
+            Exception[] failed = new Exception[1];
+            List<Object[]> batch = new ArrayList<>();
+            try {
+                loader.load(row -> {
+                    batch.add(row);
+                    if (batch.size() >= BATCH_SIZE) {
+                        publish(model, token, new ArrayList<>(batch));
+                        batch.clear();
+                    }
+                });
+            } catch (Exception e) {
+                e.printStackTrace();
+                failed[0] = e;
+            }
+            SwingUtilities.invokeLater(() -> {
+                boolean superseded = current.get(model) != token;
+                finished(tab, superseded ? null : failed[0]);
+                if (superseded) return;
+                for (Object[] row : batch) model.addRow(row);
+                current.remove(model);
+                if (failed[0] != null) {
+                    model.addRow(errorRow(model, failed[0]));
+                } else if (done != null) {
+                    done.run();
+                }
+            });
+        });
+    }
+
+    // Runs work on a loader thread and then done with its result on the EDT, for data that
+    // does not go into a DefaultTableModel. Must be called on the EDT.
+    public static <T> void run(Component component, Callable<T> work, Consumer<T> done) {
+        run(component, null, work, done);
+    }
+
+    // As above; a later run with the same key (e.g. the table model being filled) supersedes
+    // this one, whose result is then dropped, and closed if it holds resources.
+    public static <T> void run(Component component, Object key, Callable<T> work, Consumer<T> done) {
+        Object token = new Object();
+        if (key != null) current.put(key, token);
+        Component tab = started(component);
+        executor().execute(() -> {
+            T result;
+            try {
+                result = work.call();
+            } catch (Exception e) {
+                e.printStackTrace();
+                SwingUtilities.invokeLater(() -> {
+                    boolean superseded = key != null && current.get(key) != token;
+                    finished(tab, superseded ? null : e);
+                    if (!superseded && key != null) current.remove(key);
+                });
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                finished(tab, null);
+                if (key != null) {
+                    if (current.get(key) != token) {
+                        if (result instanceof AutoCloseable) close((AutoCloseable) result);
+                        return;
+                    }
+                    current.remove(key);
+                }
+                done.accept(result);
+            });
+        });
+    }
+
+    private static void close(AutoCloseable resource) {
+        try {
+            resource.close();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Shown in place of the rows that could not be loaded
+    private static Object[] errorRow(DefaultTableModel model, Exception error) {
+        Object[] row = new Object[model.getColumnCount()];
+        if (row.length > 0 && model.getColumnClass(0).isAssignableFrom(String.class)) {
+            row[0] = "Could not load: " + message(error);
+        }
+        return row;
+    }
+
+    private static String message(Exception error) {
+        return error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+    }
+
+    private static void publish(DefaultTableModel model, Object token, List<Object[]> rows) {
+        SwingUtilities.invokeLater(() -> {
+            if (current.get(model) != token) return;
+            for (Object[] row : rows) model.addRow(row);
+        });
+    }
+
+    // Marks the tab holding component as loading and returns it, or null outside of tabs
+    private static Component started(Component component) {
+        Component tab = component;
+        while (tab != null && !(tab.getParent() instanceof JTabbedPane)) tab = tab.getParent();
+        if (tab == null) return null;
+        JTabbedPane tabs = (JTabbedPane) tab.getParent();
+        int index = tabs.indexOfComponent(tab);
+        if (pending.merge(tab, 1, Integer::sum) == 1) {
+            String title = tabs.getTitleAt(index);
+            // A new load clears the error of the previous one
+            if (title.endsWith(FAILED)) title = title.substring(0, title.length() - FAILED.length());
+            titles.put(tab, title);
+            tabs.setTitleAt(index, title + LOADING);
+            tabs.setToolTipTextAt(index, null);
+        }
+        return tab;
+    }
+
+    // error is set if the load failed; the tab then says so once its other loads are done
+    private static void finished(Component tab, Exception error) {
+        if (tab == null) return;
+        if (error != null) errors.put(tab, error);
+        if (pending.merge(tab, -1, Integer::sum) > 0) return;
+        pending.remove(tab);
+        String title = titles.remove(tab);
+        Exception failed = errors.remove(tab);
+        if (tab.getParent() instanceof JTabbedPane && title != null) {
+            JTabbedPane tabs = (JTabbedPane) tab.getParent();
+            int index = tabs.indexOfComponent(tab);
+            tabs.setTitleAt(index, failed == null ? title : title + FAILED);
+            if (failed != null) tabs.setToolTipTextAt(index, "Could not load: " + message(failed));
+        }
+    }
+}
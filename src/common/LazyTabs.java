@@ -0,0 +1,95 @@
+package common;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Builds the tabs of a dashboard when they are first needed instead of all in the
+// constructor. start() builds and loads the selected tab only; the others are built when
+// first selected, or prefetched one at a time once the window has been up for a moment, with
+// their data loaded at low priority (see AsyncLoader.prefetch). Tabs that are expensive to
+// load, like the whole activity log, can opt out of prefetching. Tabs can also be reloaded when
+// the files they show change (see LiveRefresh).
+public class LazyTabs {
+    private static final int PREFETCH_DELAY_MS = 1500;
+    private static final int PREFETCH_INTERVAL_MS = 300;
+
+    private final JTabbedPane tabs;
+    private final List<Tab> added = new ArrayList<>();
+    private Timer prefetchTimer;
+
+    private static class Tab {
+        final Supplier<? extends JComponent> build;
+        final Runnable load;
+        final boolean prefetch;
+        boolean built;
+
+        Tab(Supplier<? extends JComponent> build, Runnable load, boolean prefetch) {
+            this.build = build;
+            this.load = load;
+            this.prefetch = prefetch;
+        }
+    }
+
+    public LazyTabs(JTabbedPane tabs) {
+        this.tabs = tabs;
+    }
+
+    // load (may be null) fills the tab's tables once it is built.
+    public void add(String title, Supplier<? extends JComponent> build, Runnable load) {
+        add(title, build, load, true);
+    }
+
+    public void add(String title, Supplier<? extends JComponent> build, Runnable load, boolean prefetch) {
+        added.add(new Tab(build, load, prefetch));
+        JPanel placeholder = new JPanel(new BorderLayout());
+        placeholder.setBackground(Color.WHITE);
+        tabs.addTab(title, placeholder);
+    }
+
+    // Builds the selected tab and arranges for the rest. Call once all tabs are added.
+    public void start() {
+        build(tabs.getSelectedIndex(), false);
+        tabs.addChangeListener(e -> build(tabs.getSelectedIndex(), false));
+        prefetchTimer = new Timer(PREFETCH_INTERVAL_MS, e -> prefetchNext());
+        prefetchTimer.setInitialDelay(PREFETCH_DELAY_MS);
+        prefetchTimer.start();
+    }
+
+    // Reloads the tab when another process changes one of the files, once it has been built.
+    public void reloadOn(String title, String... filenames) {
+        Tab tab = added.get(tabs.indexOfTab(title));
+        LiveRefresh.register(this, () -> {
+            if (tab.built && tab.load != null) tab.load.run();
+        }, filenames);
+    }
+
+    public void stop() {
+        if (prefetchTimer != null) prefetchTimer.stop();
+        LiveRefresh.unregister(this);
+    }
+
+    // One tab per tick, so the EDT is never busy for long
+    private void prefetchNext() {
+        for (int i = 0; i < added.size(); i++) {
+            Tab tab = added.get(i);
+            if (!tab.built && tab.prefetch) {
+                build(i, true);
+                return;
+            }
+        }
+        prefetchTimer.stop();
+    }
+
+    private void build(int index, boolean prefetch) {
+        if (index < 0 || index >= added.size()) return;
+        Tab tab = added.get(index);
+        if (tab.built) return;
+        tab.built = true;
+        tabs.setComponentAt(index, tab.build.get());
+        if (tab.load == null) return;
+        if (prefetch) AsyncLoader.prefetch(tab.load); else tab.load.run();
+    }
+}
@@ -0,0 +1,49 @@
+package common;
+
+import utils.DataWatcher;
+
+import javax.swing.*;
+import java.util.*;
+
+// Reloads the tables of an open dashboard when another process changes the data files they
+// are built from (see DataWatcher), so that users sharing the data directory see each other's
+// changes without pressing Refresh. A table is reloaded once per batch of changes, however
+// many of its files changed, and tables over other files are left alone.
+public class LiveRefresh {
+    // EDT only
+    private static final List<Registration> registrations = new ArrayList<>();
+
+    private static class Registration {
+        final Object owner;
+        final Runnable reload;
+        final Set<String> filenames;
+
+        Registration(Object owner, Runnable reload, Set<String> filenames) {
+            this.owner = owner;
+            this.reload = reload;
+            this.filenames = filenames;
+        }
+    }
+
+    static {
+        DataWatcher.addListener(changed -> SwingUtilities.invokeLater(() -> reload(changed)));
+    }
+
+    private LiveRefresh() {
+    }
+
+    public static void register(Object owner, Runnable reload, String... filenames) {
+        registrations.add(new Registration(owner, reload, new HashSet<>(Arrays.asList(filenames))));
+    }
+
+    // Drops everything the owner registered, e.g. when its window closes.
+    public static void unregister(Object owner) {
+        registrations.removeIf(registration -> registration.owner == owner);
+    }
+
+    private static void reload(Set<String> changed) {
+        for (Registration registration : new ArrayList<>(registrations)) {
+            if (!Collections.disjoint(registration.filenames, changed)) registration.reload.run();
+        }
+    }
+}
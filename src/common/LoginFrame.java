@@ -8,7 +8,6 @@ import student.*;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.List;
 
 public class LoginFrame extends JFrame {
     private JTextField userIdField;
@@ -143,46 +142,39 @@ public class LoginFrame extends JFrame {
         // HASH INPUT PASSWORD
         String hashedInput = Security.hashPassword(rawPassword);
 
-        List<String[]> users = FileHandler.getAllRecords("users.txt");
-        if (users == null) {
-            errorLabel.setText("System Error: Cannot load users.");
-            return;
-        }
-
         User authenticatedUser = null;
 
-        for (String[] userData : users) {
-            // COMPARE HASHED PASSWORD INSTEAD OF RAW
-            if (userData.length >= 9 && userData[0].equals(userId) && userData[1].equals(hashedInput)) {
-                String role = userData[2];
-                try {
-                    switch (role) {
-                        case "Admin":
-                            authenticatedUser = new Admin(userData[0], userData[1], userData[2], 
-                                userData[3], userData[4], userData[5], userData[6], userData[7], userData[8]);
-                            break;
-                        case "Leader":
-                            authenticatedUser = new AcademicLeader(userData[0], userData[1], userData[2], 
-                                userData[3], userData[4], userData[5], userData[6], userData[7], userData[8]);
-                            break;
-                        case "Lecturer":
-                            String supervisorId = userData.length > 9 ? userData[9] : "";
-                            Lecturer lecturer = new Lecturer(userData[0], userData[1], userData[2], 
-                                userData[3], userData[4], userData[5], userData[6], userData[7], userData[8]);
-                            lecturer.setSupervisorId(supervisorId);
-                            authenticatedUser = lecturer;
-                            break;
-                        case "Student":
-                            authenticatedUser = new Student(userData[0], userData[1], userData[2], 
-                                userData[3], userData[4], userData[5], userData[6], userData[7], userData[8]);
-                            break;
-                    }
-                } catch (Exception e) {
-                    errorLabel.setText("Error loading user profile.");
-                    e.printStackTrace();
-                    return;
+        // Primary key lookup instead of scanning every user
+        String[] userData = FileHandler.findRecord("users.txt", userId);
+        // COMPARE HASHED PASSWORD INSTEAD OF RAW
+        if (userData != null && userData.length >= 9 && userData[1].equals(hashedInput)) {
+            String role = userData[2];
+            try {
+                switch (role) {
+                    case "Admin":
+                        authenticatedUser = new Admin(userData[0], userData[1], userData[2], 
+                            userData[3], userData[4], userData[5], userData[6], userData[7], userData[8]);
+                        break;
+                    case "Leader":
+                        authenticatedUser = new AcademicLeader(userData[0], userData[1], userData[2], 
+                            userData[3], userData[4], userData[5], userData[6], userData[7], userData[8]);
+                        break;
+                    case "Lecturer":
+                        String supervisorId = userData.length > 9 ? userData[9] : "";
+                        Lecturer lecturer = new Lecturer(userData[0], userData[1], userData[2], 
+                            userData[3], userData[4], userData[5], userData[6], userData[7], userData[8]);
+                        lecturer.setSupervisorId(supervisorId);
+                        authenticatedUser = lecturer;
+                        break;
+                    case "Student":
+                        authenticatedUser = new Student(userData[0], userData[1], userData[2], 
+                            userData[3], userData[4], userData[5], userData[6], userData[7], userData[8]);
+                        break;
                 }
-                break;
+            } catch (Exception e) {
+                errorLabel.setText("Error loading user profile.");
+                e.printStackTrace();
+                return;
             }
         }
 
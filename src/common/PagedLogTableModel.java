@@ -0,0 +1,72 @@
+package common;
+
+import utils.RecordSpool;
+
+import javax.swing.table.AbstractTableModel;
+import java.io.IOException;
+import java.util.List;
+
+// The activity log as a table, newest entry first, without holding the entries in memory:
+// they live in a RecordSpool on disk and the table reads back only the pages it shows.
+public class PagedLogTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private final String[] columnNames;
+    private RecordSpool spool;
+    private int rows;
+
+    public PagedLogTableModel(String[] columnNames) {
+        this.columnNames = columnNames;
+    }
+
+    // Shows the entries of the spool, which the model owns from now on.
+    public void setSpool(RecordSpool spool) {
+        if (this.spool != null) this.spool.close();
+        this.spool = spool;
+        rows = spool.size();
+        fireTableDataChanged();
+    }
+
+    // Adds entries logged since, oldest first; they go to the top of the table.
+    public void append(List<String[]> entries) {
+        if (spool == null) return;
+        int added = 0;
+        try {
+            for (String[] entry : entries) {
+                spool.append(entry);
+                added++;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (added == 0) return;
+        rows += added;
+        fireTableRowsInserted(0, added - 1);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        try {
+            String[] entry = spool.get(rows - 1 - row);
+            return column < entry.length ? entry[column] : "";
+        } catch (IOException e) {
+            e.printStackTrace();
+            return "";
+        }
+    }
+}
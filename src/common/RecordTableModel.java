@@ -0,0 +1,121 @@
+package common;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+import java.util.function.Predicate;
+
+// A read-only table over records as the RecordStore holds them. Rather than copying every
+// record into the Vectors of a DefaultTableModel, it keeps the (immutable) list of records
+// and an int[] of the positions shown, and works out a cell only when the table asks for it,
+// which for a JTable is only the rows in view. Loading 50k users is then one pass that picks
+// the positions, with a single change event.
+//
+// Cells can still be changed with setValueAt, e.g. after saving marks: the row is then copied
+// out and kept separately until the next setRows.
+public class RecordTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private final String[] columnNames;
+    private Columns columns;
+    private List<String[]> records = Collections.emptyList();
+    private int[] positions = new int[0];
+    private final Map<Integer, Object[]> edited = new HashMap<>();
+
+    // Maps a record to the value shown in a column.
+    public interface Columns {
+        Object value(String[] record, int column);
+    }
+
+    // The records to show and which of them pass the filter. Built off the EDT by select().
+    public static final class Rows {
+        final List<String[]> records;
+        final int[] positions;
+        final Columns columns;      // null to keep the model's
+
+        private Rows(List<String[]> records, int[] positions, Columns columns) {
+            this.records = records;
+            this.positions = positions;
+            this.columns = columns;
+        }
+
+        // The records that passed the filter, by model row.
+        public List<String[]> shown() {
+            return new AbstractList<String[]>() {
+                public String[] get(int row) {
+                    return records.get(positions[row]);
+                }
+
+                public int size() {
+                    return positions.length;
+                }
+            };
+        }
+    }
+
+    public RecordTableModel(String[] columnNames, Columns columns) {
+        this.columnNames = columnNames;
+        this.columns = columns;
+    }
+
+    // Picks the records to show. records must not change afterwards; RecordStore snapshots don't.
+    public static Rows select(List<String[]> records, Predicate<String[]> filter) {
+        return select(records, filter, null);
+    }
+
+    // As above, with cells that depend on data loaded along with the records.
+    public static Rows select(List<String[]> records, Predicate<String[]> filter, Columns columns) {
+        int[] positions = new int[records.size()];
+        int count = 0;
+        for (int i = 0; i < records.size(); i++) {
+            if (filter.test(records.get(i))) positions[count++] = i;
+        }
+        return new Rows(records, Arrays.copyOf(positions, count), columns);
+    }
+
+    public void setRows(Rows rows) {
+        records = rows.records;
+        positions = rows.positions;
+        if (rows.columns != null) columns = rows.columns;
+        edited.clear();
+        fireTableDataChanged();
+    }
+
+    // The record behind a model row.
+    public String[] record(int row) {
+        return records.get(positions[row]);
+    }
+
+    @Override
+    public int getRowCount() {
+        return positions.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Object[] changed = edited.get(row);
+        if (changed != null) return changed[column];
+        return columns.value(record(row), column);
+    }
+
+    @Override
+    public void setValueAt(Object value, int row, int column) {
+        Object[] changed = edited.get(row);
+        if (changed == null) {
+            changed = new Object[columnNames.length];
+            for (int c = 0; c < changed.length; c++) changed[c] = columns.value(record(row), c);
+            edited.put(row, changed);
+        }
+        changed[column] = value;
+        fireTableCellUpdated(row, column);
+    }
+}
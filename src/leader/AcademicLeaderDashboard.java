@@ -11,11 +11,15 @@ import java.util.List;
 
 public class AcademicLeaderDashboard extends JFrame {
     private JTabbedPane tabbedPane;
+    private LazyTabs lazyTabs;
     private JTable lecturerTable;
     private JTable moduleTable;
     private DefaultTableModel lecturerTableModel;
     private DefaultTableModel moduleTableModel;
     private String currentLeaderId;
+    private ReportWorker<?> reportWorker; // The report being computed, if any
+    private JLabel reportStatusLabel;
+    private JButton cancelReportButton;
 
     // UI Constants
     private final Color PRIMARY_COLOR = new Color(52, 152, 219);
@@ -32,7 +36,6 @@ public class AcademicLeaderDashboard extends JFrame {
         setLocationRelativeTo(null);
 
         initComponents();
-        loadData();
     }
 
     private void initComponents() {
@@ -59,6 +62,7 @@ public class AcademicLeaderDashboard extends JFrame {
         JButton logoutButton = createStyledButton("Logout", DANGER_COLOR);
         logoutButton.addActionListener(e -> {
             Session.getInstance().logout();
+            lazyTabs.stop();
             dispose();
             new LoginFrame().setVisible(true);
         });
@@ -73,9 +77,15 @@ public class AcademicLeaderDashboard extends JFrame {
         tabbedPane.setFont(new Font("Arial", Font.PLAIN, 14));
         tabbedPane.setBackground(BG_COLOR);
 
-        tabbedPane.addTab("My Lecturers", createLecturersPanel());
-        tabbedPane.addTab("My Modules", createModulesPanel());
-        tabbedPane.addTab("Reports", createReportsPanel());
+        // Built and loaded on first use
+        lazyTabs = new LazyTabs(tabbedPane);
+        lazyTabs.add("My Lecturers", this::createLecturersPanel, this::loadLecturerData);
+        lazyTabs.add("My Modules", this::createModulesPanel, this::loadModuleData);
+        lazyTabs.add("Reports", this::createReportsPanel, null);
+        // Changes made elsewhere
+        lazyTabs.reloadOn("My Lecturers", "users.txt");
+        lazyTabs.reloadOn("My Modules", "modules.txt");
+        lazyTabs.start();
 
         add(tabbedPane, BorderLayout.CENTER);
     }
@@ -228,39 +238,246 @@ public class AcademicLeaderDashboard extends JFrame {
         });
         topPanel.add(generateButton);
 
+        // Every module of this leader side by side, computed in one pass
+        JButton allButton = createStyledButton("All My Modules", HEADER_COLOR);
+        allButton.addActionListener(e -> generateModuleSummaries(panel));
+        topPanel.add(allButton);
+
+        // Stored marks of this leader's modules that look like entry mistakes
+        JButton auditButton = createStyledButton("Audit Marks", DANGER_COLOR);
+        auditButton.addActionListener(e -> generateAudit(panel));
+        topPanel.add(auditButton);
+
+        cancelReportButton = createStyledButton("Cancel", DANGER_COLOR);
+        cancelReportButton.setEnabled(false);
+        cancelReportButton.addActionListener(e -> {
+            if (reportWorker != null) reportWorker.cancel(false);
+        });
+        topPanel.add(cancelReportButton);
+
+        reportStatusLabel = new JLabel(" ");
+        reportStatusLabel.setFont(new Font("Arial", Font.PLAIN, 12));
+        topPanel.add(reportStatusLabel);
+
         panel.add(topPanel, BorderLayout.NORTH);
         return panel;
     }
 
-    private void generateReport(String moduleId, JPanel containerPanel) {
-        // ... (Logic remains same as previous version, just ensuring UI is clean) ...
-        List<String[]> assessments = FileHandler.getAllRecords("assessments.txt");
-        List<String> assessmentIds = new ArrayList<>();
-        
-        for (String[] assessment : assessments) {
-            if (assessment.length >= 2 && assessment[1].equals(moduleId)) {
+    private void showModuleSummaries(List<ReportService.ModuleSummary> summaries, JPanel containerPanel) {
+        Component[] components = containerPanel.getComponents();
+        for (Component comp : components) {
+            if (comp instanceof JPanel && comp != containerPanel.getComponent(0)) {
+                containerPanel.remove(comp);
+            }
+        }
+
+        String[] columns = {"Module ID", "Module Name", "Lecturer ID", "Assessments", "Results",
+            "Average", "Std Dev", "Min", "Max", "Median", "Pass %"};
+        DefaultTableModel model = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) { return false; }
+
+            // Numeric columns sort by value, not as text
+            @Override
+            public Class<?> getColumnClass(int column) {
+                if (column == 3) return Integer.class;
+                if (column == 4) return Long.class;
+                return column > 4 ? Double.class : String.class;
+            }
+        };
+        for (ReportService.ModuleSummary summary : summaries) {
+            MarkStatistics stats = summary.statistics;
+            model.addRow(new Object[]{summary.moduleId, summary.moduleName, summary.lecturerId,
+                summary.assessments, stats.count(), round(stats.mean()), round(stats.stddev()),
+                round(stats.min()), round(stats.max()), round(stats.median()), round(summary.passRate())});
+        }
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        JScrollPane scrollPane = new JScrollPane(table);
+        styleTable(table, scrollPane);
+
+        JPanel summaryPanel = new JPanel(new BorderLayout());
+        summaryPanel.setBackground(BG_COLOR);
+        summaryPanel.add(scrollPane, BorderLayout.CENTER);
+        containerPanel.add(summaryPanel, BorderLayout.CENTER);
+        containerPanel.revalidate();
+        containerPanel.repaint();
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    // Computes a report off the EDT. A full scan of results.txt (only needed when the maintained
+    // aggregates are out of date) reports its progress and running totals in the status line;
+    // Swing components are only touched from process() and done().
+    private abstract class ReportWorker<T> extends SwingWorker<T, String> implements ReportService.Progress {
+        private final Set<String> assessmentIds;
+        private final MarkStatistics partial = new MarkStatistics();
+
+        ReportWorker(Set<String> assessmentIds) {
+            this.assessmentIds = assessmentIds;
+        }
+
+        @Override
+        public void scanned(Map<String, MarkStatistics> partition, long records, long done, long total) {
+            String status;
+            synchronized (partial) {
+                for (String id : assessmentIds) {
+                    MarkStatistics found = partition.get(id);
+                    if (found != null) partial.merge(found);
+                }
+                status = String.format("Scanned %,d records (%d%%) - %,d marks so far, average %.2f",
+                    records, total == 0 ? 100 : done * 100 / total, partial.count(), partial.mean());
+            }
+            publish(status);
+        }
+
+        @Override
+        protected void process(List<String> chunks) {
+            if (reportWorker == this) reportStatusLabel.setText(chunks.get(chunks.size() - 1));
+        }
+
+        @Override
+        protected void done() {
+            if (reportWorker != this) return;
+            reportWorker = null;
+            cancelReportButton.setEnabled(false);
+            if (isCancelled()) {
+                reportStatusLabel.setText("Report cancelled.");
+                return;
+            }
+            try {
+                T result = get();
+                reportStatusLabel.setText(" ");
+                show(result);
+            } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+                e.printStackTrace();
+                reportStatusLabel.setText("Report failed.");
+            }
+        }
+
+        protected abstract void show(T result);
+    }
+
+    private void startReport(ReportWorker<?> worker) {
+        if (reportWorker != null) reportWorker.cancel(false);
+        reportWorker = worker;
+        reportStatusLabel.setText("Generating report...");
+        cancelReportButton.setEnabled(true);
+        worker.execute();
+    }
+
+    private Set<String> assessmentsOf(Set<String> moduleIds) {
+        Set<String> assessmentIds = new HashSet<>();
+        for (String[] assessment : FileHandler.getAllRecords("assessments.txt")) {
+            if (assessment.length >= 2 && moduleIds.contains(assessment[1])) {
                 assessmentIds.add(assessment[0]);
             }
         }
+        return assessmentIds;
+    }
+
+    private void generateModuleSummaries(JPanel containerPanel) {
+        Set<String> moduleIds = new HashSet<>();
+        for (String[] module : FileHandler.getAllRecords("modules.txt")) {
+            if (module.length >= 4 && module[3].equals(currentLeaderId)) moduleIds.add(module[0]);
+        }
+        startReport(new ReportWorker<List<ReportService.ModuleSummary>>(assessmentsOf(moduleIds)) {
+            @Override
+            protected List<ReportService.ModuleSummary> doInBackground() {
+                return ReportService.forLeader(currentLeaderId, this);
+            }
+
+            @Override
+            protected void show(List<ReportService.ModuleSummary> summaries) {
+                showModuleSummaries(summaries, containerPanel);
+            }
+        });
+    }
+
+    private void generateAudit(JPanel containerPanel) {
+        Set<String> moduleIds = new HashSet<>();
+        for (String[] module : FileHandler.getAllRecords("modules.txt")) {
+            if (module.length >= 4 && module[3].equals(currentLeaderId)) moduleIds.add(module[0]);
+        }
+        Set<String> assessmentIds = assessmentsOf(moduleIds);
+        startReport(new ReportWorker<List<AnomalyDetector.Finding>>(assessmentIds) {
+            @Override
+            protected List<AnomalyDetector.Finding> doInBackground() {
+                return AnomalyDetector.audit(assessmentIds, this);
+            }
+
+            @Override
+            protected void show(List<AnomalyDetector.Finding> findings) {
+                if (findings == null) return;
+                showAudit(findings, containerPanel);
+                reportStatusLabel.setText(findings.size() + " suspicious marks found.");
+            }
+        });
+    }
+
+    private void showAudit(List<AnomalyDetector.Finding> findings, JPanel containerPanel) {
+        Component[] components = containerPanel.getComponents();
+        for (Component comp : components) {
+            if (comp instanceof JPanel && comp != containerPanel.getComponent(0)) {
+                containerPanel.remove(comp);
+            }
+        }
+
+        Map<String, String> assessmentNames = new HashMap<>();
+        for (String[] assessment : FileHandler.getAllRecords("assessments.txt")) {
+            if (assessment.length >= 3) assessmentNames.putIfAbsent(assessment[0], assessment[1] + " - " + assessment[2]);
+        }
+        String[] columns = {"Assessment ID", "Module - Assessment", "Student ID", "Mark", "Issue"};
+        DefaultTableModel model = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) { return false; }
+        };
+        for (AnomalyDetector.Finding finding : findings) {
+            model.addRow(new Object[]{finding.assessmentId, assessmentNames.getOrDefault(finding.assessmentId, ""),
+                finding.studentId, finding.mark, finding.reason});
+        }
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        JScrollPane scrollPane = new JScrollPane(table);
+        styleTable(table, scrollPane);
+        table.getColumnModel().getColumn(4).setPreferredWidth(350);
+
+        JPanel auditPanel = new JPanel(new BorderLayout());
+        auditPanel.setBackground(BG_COLOR);
+        auditPanel.add(scrollPane, BorderLayout.CENTER);
+        containerPanel.add(auditPanel, BorderLayout.CENTER);
+        containerPanel.revalidate();
+        containerPanel.repaint();
+    }
 
+    private void generateReport(String moduleId, JPanel containerPanel) {
+        Set<String> assessmentIds = assessmentsOf(Collections.singleton(moduleId));
         if (assessmentIds.isEmpty()) {
             JOptionPane.showMessageDialog(this, "No assessments found for this module", "No Data", JOptionPane.WARNING_MESSAGE);
             return;
         }
 
-        List<String[]> results = FileHandler.getAllRecords("results.txt");
-        List<Double> marks = new ArrayList<>();
-        final int[] counts = new int[2];
-
-        for (String[] result : results) {
-            if (result.length >= 3 && assessmentIds.contains(result[0])) {
-                try {
-                    double mark = Double.parseDouble(result[2]);
-                    marks.add(mark);
-                    if (mark >= 50) counts[0]++; else counts[1]++;
-                } catch (NumberFormatException e) { }
+        startReport(new ReportWorker<ReportService.ModuleReport>(assessmentIds) {
+            // Served from the cache unless this module's results, assessments or the grading changed
+            @Override
+            protected ReportService.ModuleReport doInBackground() {
+                return ReportCache.get(moduleId, this);
             }
-        }
+
+            @Override
+            protected void show(ReportService.ModuleReport report) {
+                showReport(report, containerPanel);
+                reportStatusLabel.setText(String.format("Report cache: %d hits, %d misses",
+                    ReportCache.hits(), ReportCache.misses()));
+            }
+        });
+    }
+
+    private void showReport(ReportService.ModuleReport report, JPanel containerPanel) {
+        MarkStatistics stats = report.statistics;
+        Map<String, Long> gradeCounts = report.gradeCounts;
         
         // Remove old report components
         Component[] components = containerPanel.getComponents();
@@ -270,26 +487,31 @@ public class AcademicLeaderDashboard extends JFrame {
             }
         }
 
-        if (marks.isEmpty()) {
+        if (stats.count() == 0) {
              JOptionPane.showMessageDialog(this, "No student results found yet.", "Info", JOptionPane.INFORMATION_MESSAGE);
              containerPanel.repaint();
              return;
         }
 
-        double avg = marks.stream().mapToDouble(Double::doubleValue).average().orElse(0);
-        double min = marks.stream().mapToDouble(Double::doubleValue).min().orElse(0);
-        double max = marks.stream().mapToDouble(Double::doubleValue).max().orElse(0);
-
         JPanel reportPanel = new JPanel();
         reportPanel.setLayout(new BoxLayout(reportPanel, BoxLayout.Y_AXIS));
         reportPanel.setBackground(BG_COLOR);
         reportPanel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
 
+        StringBuilder grades = new StringBuilder();
+        for (Map.Entry<String, Long> entry : gradeCounts.entrySet()) {
+            if (grades.length() > 0) grades.append(", ");
+            grades.append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+
         JLabel statsLabel = new JLabel(String.format(
             "<html><h2>Statistics</h2>" +
-            "Total Results: %d<br>Average: %.2f<br>Minimum: %.2f<br>Maximum: %.2f<br>" +
-            "Pass: %d | Fail: %d</html>", 
-            marks.size(), avg, min, max, counts[0], counts[1]
+            "Total Results: %d<br>Average: %.2f (Std Dev %.2f)<br>Minimum: %.2f<br>Maximum: %.2f<br>" +
+            "Median: %.1f | Q1: %.1f | Q3: %.1f | P90: %.1f<br>" +
+            "Pass: %d | Fail: %d<br>Grades: %s</html>", 
+            stats.count(), stats.mean(), stats.stddev(), stats.min(), stats.max(),
+            stats.median(), stats.quantile(0.25), stats.quantile(0.75), stats.quantile(0.9),
+            stats.passCount(), stats.failCount(), grades
         ));
         statsLabel.setFont(new Font("Arial", Font.PLAIN, 14));
         reportPanel.add(statsLabel);
@@ -299,32 +521,45 @@ public class AcademicLeaderDashboard extends JFrame {
             @Override
             protected void paintComponent(Graphics g) {
                 super.paintComponent(g);
-                if (marks.isEmpty()) return;
+                if (stats.count() == 0) return;
                 
                 Graphics2D g2d = (Graphics2D) g;
                 g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                int total = counts[0] + counts[1];
-                if(total == 0) return;
+                long[] counts = {stats.passCount(), stats.failCount()};
+                long total = stats.count();
 
                 int h = getHeight() - 50;
                 int barW = 60;
                 
                 // Pass Bar
-                int h1 = (counts[0] * h) / total;
+                int h1 = (int) (counts[0] * h / total);
                 g2d.setColor(SUCCESS_COLOR);
                 g2d.fillRect(50, getHeight() - h1 - 30, barW, h1);
                 g2d.setColor(Color.BLACK);
                 g2d.drawString("Pass: " + counts[0], 50, getHeight() - 10);
 
                 // Fail Bar
-                int h2 = (counts[1] * h) / total;
+                int h2 = (int) (counts[1] * h / total);
                 g2d.setColor(DANGER_COLOR);
                 g2d.fillRect(150, getHeight() - h2 - 30, barW, h2);
                 g2d.setColor(Color.BLACK);
                 g2d.drawString("Fail: " + counts[1], 150, getHeight() - 10);
+
+                // Mark distribution in bands of 10
+                long[] histogram = stats.histogram(10);
+                long tallest = 1;
+                for (long c : histogram) tallest = Math.max(tallest, c);
+                for (int i = 0; i < histogram.length; i++) {
+                    int x = 260 + i * 36;
+                    int hb = (int) (histogram[i] * h / tallest);
+                    g2d.setColor(PRIMARY_COLOR);
+                    g2d.fillRect(x, getHeight() - hb - 30, 30, hb);
+                    g2d.setColor(Color.BLACK);
+                    g2d.drawString(String.valueOf(i * 10), x + 4, getHeight() - 10);
+                }
             }
         };
-        chartPanel.setPreferredSize(new Dimension(400, 200));
+        chartPanel.setPreferredSize(new Dimension(660, 200));
         chartPanel.setBackground(BG_COLOR);
         chartPanel.setBorder(BorderFactory.createLineBorder(Color.LIGHT_GRAY));
         reportPanel.add(chartPanel);
@@ -334,29 +569,25 @@ public class AcademicLeaderDashboard extends JFrame {
         containerPanel.repaint();
     }
 
-    private void loadData() {
-        loadLecturerData();
-        loadModuleData();
-    }
-
+    // Each table is read on a background thread and filled in as its rows arrive
     private void loadLecturerData() {
-        lecturerTableModel.setRowCount(0);
-        List<String[]> users = FileHandler.getAllRecords("users.txt");
-        for (String[] user : users) {
-            if (user.length >= 10 && user[2].equals("Lecturer") && user[9].equals(currentLeaderId)) {
-                lecturerTableModel.addRow(new Object[]{user[0], user[3], user[5], user[6]});
+        AsyncLoader.load(lecturerTable, lecturerTableModel, rows -> {
+            for (String[] user : FileHandler.getAllRecords("users.txt")) {
+                if (user.length >= 10 && user[2].equals("Lecturer") && user[9].equals(currentLeaderId)) {
+                    rows.accept(new Object[]{user[0], user[3], user[5], user[6]});
+                }
             }
-        }
+        }, null);
     }
 
     private void loadModuleData() {
-        moduleTableModel.setRowCount(0);
-        List<String[]> modules = FileHandler.getAllRecords("modules.txt");
-        for (String[] module : modules) {
-            if (module.length >= 4 && module[3].equals(currentLeaderId)) {
-                moduleTableModel.addRow(new Object[]{module[0], module[1], module[2]});
+        AsyncLoader.load(moduleTable, moduleTableModel, rows -> {
+            for (String[] module : FileHandler.getAllRecords("modules.txt")) {
+                if (module.length >= 4 && module[3].equals(currentLeaderId)) {
+                    rows.accept(new Object[]{module[0], module[1], module[2]});
+                }
             }
-        }
+        }, null);
     }
 
     // --- Module CRUD Dialogs ---
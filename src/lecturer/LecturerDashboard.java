@@ -11,6 +11,7 @@ import java.util.List;
 
 public class LecturerDashboard extends JFrame {
     private JTabbedPane tabbedPane;
+    private LazyTabs lazyTabs;
     private JTable assessmentTable;
     private DefaultTableModel assessmentTableModel;
     private JTable feedbackTable; // NEW: Table for feedback
@@ -35,7 +36,6 @@ public class LecturerDashboard extends JFrame {
         setLocationRelativeTo(null);
 
         initComponents();
-        loadData();
     }
 
     private void findLecturerModule() {
@@ -73,6 +73,7 @@ public class LecturerDashboard extends JFrame {
         JButton logoutButton = createStyledButton("Logout", DANGER_COLOR);
         logoutButton.addActionListener(e -> {
             Session.getInstance().logout();
+            lazyTabs.stop();
             dispose();
             new LoginFrame().setVisible(true);
         });
@@ -87,9 +88,15 @@ public class LecturerDashboard extends JFrame {
         tabbedPane.setFont(new Font("Arial", Font.PLAIN, 14));
         tabbedPane.setBackground(BG_COLOR);
 
-        tabbedPane.addTab("Assessments", createAssessmentsPanel());
-        tabbedPane.addTab("Grade Students", createGradingPanel());
-        tabbedPane.addTab("Student Feedback", createFeedbackPanel()); // NEW TAB
+        // Built and loaded on first use
+        lazyTabs = new LazyTabs(tabbedPane);
+        lazyTabs.add("Assessments", this::createAssessmentsPanel, this::loadAssessmentData);
+        lazyTabs.add("Grade Students", this::createGradingPanel, null);
+        lazyTabs.add("Student Feedback", this::createFeedbackPanel, this::loadFeedbackData); // NEW TAB
+        // Changes made elsewhere; the grading table registers its own
+        lazyTabs.reloadOn("Assessments", "assessments.txt");
+        lazyTabs.reloadOn("Student Feedback", "comments.txt");
+        lazyTabs.start();
 
         add(tabbedPane, BorderLayout.CENTER);
     }
@@ -151,7 +158,7 @@ public class LecturerDashboard extends JFrame {
             return panel;
         }
 
-        String[] columns = {"Assessment ID", "Title", "Type", "Max Marks"};
+        String[] columns = {"Assessment ID", "Title", "Type", "Max Marks", "Weight (%)"};
         assessmentTableModel = new DefaultTableModel(columns, 0) {
             @Override
             public boolean isCellEditable(int row, int column) { return false; }
@@ -206,22 +213,26 @@ public class LecturerDashboard extends JFrame {
         }
         topPanel.add(assessmentCombo);
 
-        String[] columns = {"Student ID", "Student Name", "Marks", "Feedback"};
-        DefaultTableModel studentTableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) { return false; }
-        };
+        String[] columns = {"Student ID", "Student Name", "Marks", "Feedback", "Grade"};
+        // Cells come from the cached users.txt records and the assessment's results
+        RecordTableModel studentTableModel = new RecordTableModel(columns, null);
         JTable studentTable = new JTable(studentTableModel);
         JScrollPane scrollPane = new JScrollPane(studentTable);
         styleTable(studentTable, scrollPane);
 
+        String[] loadedAssessment = new String[1];
         JButton loadStudentsButton = createStyledButton("Load Students", PRIMARY_COLOR);
         loadStudentsButton.addActionListener(e -> {
             if (assessmentCombo.getSelectedItem() != null) {
                 String assessmentId = ((String) assessmentCombo.getSelectedItem()).split(" - ")[0];
-                loadStudentsForGrading(studentTableModel, assessmentId);
+                loadedAssessment[0] = assessmentId;
+                loadStudentsForGrading(studentTable, studentTableModel, assessmentId);
             }
         });
+        // Marks entered from another machine show up without loading the students again
+        LiveRefresh.register(lazyTabs, () -> {
+            if (loadedAssessment[0] != null) loadStudentsForGrading(studentTable, studentTableModel, loadedAssessment[0]);
+        }, "results.txt", "users.txt");
         topPanel.add(loadStudentsButton);
         
         panel.add(topPanel, BorderLayout.NORTH);
@@ -250,7 +261,11 @@ public class LecturerDashboard extends JFrame {
             showEnterMarksDialog(assessmentId, studentId, studentName, studentTableModel, selectedRow);
         });
 
+        JButton finalGradesButton = createStyledButton("Final Grades", PRIMARY_COLOR);
+        finalGradesButton.addActionListener(e -> showFinalGradesDialog());
+
         buttonPanel.add(enterMarksButton);
+        buttonPanel.add(finalGradesButton);
         panel.add(buttonPanel, BorderLayout.SOUTH);
 
         return panel;
@@ -290,56 +305,54 @@ public class LecturerDashboard extends JFrame {
     }
 
     private void loadFeedbackData() {
-        feedbackTableModel.setRowCount(0);
-        List<String[]> comments = FileHandler.getAllRecords("comments.txt");
-        List<String[]> users = FileHandler.getAllRecords("users.txt");
-        List<String[]> assessments = FileHandler.getAllRecords("assessments.txt");
-
-        for (String[] comment : comments) {
-            // Format: StudentID | LecturerID | AssessmentID | Message
-            if (comment.length >= 4 && comment[1].equals(currentLecturerId)) {
-                
-                String studentName = "Unknown";
-                for(String[] u : users) {
-                    if(u[0].equals(comment[0])) { studentName = u[3]; break; }
-                }
-
-                String context = "General";
-                if(!comment[2].equals("General")) {
-                    for(String[] ass : assessments) {
-                        if(ass[0].equals(comment[2])) { context = ass[2] + " (" + ass[0] + ")"; break; }
+        AsyncLoader.load(feedbackTable, feedbackTableModel, rows -> {
+            for (String[] comment : FileHandler.findRecords("comments.txt", 1, currentLecturerId)) {
+                // Format: StudentID | LecturerID | AssessmentID | Message
+                if (comment.length >= 4) {
+
+                    String studentName = "Unknown";
+                    String[] u = FileHandler.findRecord("users.txt", comment[0]);
+                    if(u != null && u.length > 3) studentName = u[3];
+
+                    String context = "General";
+                    if(!comment[2].equals("General")) {
+                        String[] ass = FileHandler.findRecord("assessments.txt", comment[2]);
+                        if(ass != null && ass.length > 2) context = ass[2] + " (" + ass[0] + ")";
                     }
-                }
 
-                feedbackTableModel.addRow(new Object[]{studentName, context, comment[3]});
+                    rows.accept(new Object[]{studentName, context, comment[3]});
+                }
             }
-        }
+        }, null);
     }
 
-    private void loadStudentsForGrading(DefaultTableModel tableModel, String assessmentId) {
-        tableModel.setRowCount(0);
-        List<String[]> students = FileHandler.getAllRecords("users.txt");
-        List<String[]> results = FileHandler.getAllRecords("results.txt");
-
-        for (String[] student : students) {
-            if (student.length >= 9 && student[2].equals("Student")) {
-                String marks = "";
-                String feedback = "";
-                
-                for (String[] result : results) {
-                    if (result.length >= 4 && result[0].equals(assessmentId) && result[1].equals(student[0])) {
-                        marks = result[2];
-                        feedback = result[3];
-                        break;
-                    }
-                }
-                tableModel.addRow(new Object[]{student[0], student[3], marks, feedback});
+    private void loadStudentsForGrading(JTable table, RecordTableModel tableModel, String assessmentId) {
+        AsyncLoader.run(table, tableModel, () -> {
+            GradeScale scale = GradeScale.current();
+            String[] assessment = FileHandler.findRecord("assessments.txt", assessmentId);
+            String maxMarks = assessment != null && assessment.length >= 4 ? assessment[3] : "";
+            // Only this assessment's results, keyed by student
+            Map<String, String[]> resultsByStudent = new HashMap<>();
+            for (String[] result : FileHandler.findRecords("results.txt", 0, assessmentId)) {
+                if (result.length >= 4) resultsByStudent.putIfAbsent(result[1], result);
             }
-        }
+
+            return RecordTableModel.select(FileHandler.getAllRecords("users.txt"),
+                student -> student.length >= 9 && student[2].equals("Student"),
+                (student, column) -> {
+                    if (column == 0) return student[0];
+                    if (column == 1) return student[3];
+                    String[] result = resultsByStudent.get(student[0]);
+                    if (result == null) return "";
+                    if (column == 2) return result[2];
+                    if (column == 3) return result[3];
+                    return scale.grade(result[2], maxMarks);
+                });
+        }, tableModel::setRows);
     }
 
     private void showEnterMarksDialog(String assessmentId, String studentId, String studentName, 
-                                      DefaultTableModel tableModel, int row) {
+                                      RecordTableModel tableModel, int row) {
         JDialog dialog = new JDialog(this, "Enter Marks for " + studentName, true);
         dialog.setSize(400, 300);
         dialog.setLocationRelativeTo(this);
@@ -382,29 +395,34 @@ public class LecturerDashboard extends JFrame {
                 return;
             }
 
-            try { Double.parseDouble(marks); } 
+            // parseDouble also accepts "NaN" and "Infinity", which no grade covers
+            try { if (!Double.isFinite(Double.parseDouble(marks))) throw new NumberFormatException(); }
             catch (NumberFormatException ex) {
                 JOptionPane.showMessageDialog(dialog, "Marks must be a number!", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            boolean exists = false;
-            List<String[]> results = FileHandler.getAllRecords("results.txt");
-            for (String[] result : results) {
-                if (result.length >= 2 && result[0].equals(assessmentId) && result[1].equals(studentId)) {
-                    exists = true;
-                    FileHandler.updateLine("results.txt", 0, assessmentId, 
-                        assessmentId, studentId, marks, feedback);
-                    break;
-                }
+            // Catch typos such as 850 for 85 before they are saved
+            String anomaly = AnomalyDetector.check(assessmentId, Double.parseDouble(marks));
+            if (anomaly != null) {
+                int choice = JOptionPane.showConfirmDialog(dialog, "This mark looks unusual: " + anomaly
+                    + ".\nSave it anyway?", "Check Marks", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE);
+                if (choice != JOptionPane.YES_OPTION) return;
             }
 
-            if (!exists) {
-                FileHandler.appendLine("results.txt", assessmentId, studentId, marks, feedback);
+            // Results are keyed by (AssessmentID, StudentID)
+            FileHandler.UpsertResult saved = FileHandler.upsert("results.txt", new int[]{0, 1},
+                assessmentId, studentId, marks, feedback);
+            if (saved == FileHandler.UpsertResult.FAILED) {
+                JOptionPane.showMessageDialog(dialog, "Could not save marks!", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
             }
 
             tableModel.setValueAt(marks, row, 2);
             tableModel.setValueAt(feedback, row, 3);
+            String[] assessment = FileHandler.findRecord("assessments.txt", assessmentId);
+            String maxMarks = assessment != null && assessment.length >= 4 ? assessment[3] : "";
+            tableModel.setValueAt(GradeScale.current().grade(marks, maxMarks), row, 4);
             
             dialog.dispose();
             JOptionPane.showMessageDialog(this, "Marks saved successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
@@ -423,21 +441,19 @@ public class LecturerDashboard extends JFrame {
         dialog.setVisible(true);
     }
 
-    private void loadData() {
-        loadAssessmentData();
-        loadFeedbackData();
-    }
-
+    // Each table is read on a background thread and filled in as its rows arrive
     private void loadAssessmentData() {
         if (currentModuleId == null) return;
-        
-        assessmentTableModel.setRowCount(0);
-        List<String[]> assessments = FileHandler.getAllRecords("assessments.txt");
-        for (String[] assessment : assessments) {
-            if (assessment.length >= 4 && assessment[1].equals(currentModuleId)) {
-                assessmentTableModel.addRow(assessment);
+
+        AsyncLoader.load(assessmentTable, assessmentTableModel, rows -> {
+            for (String[] assessment : FileHandler.getAllRecords("assessments.txt")) {
+                if (assessment.length >= 4 && assessment[1].equals(currentModuleId)) {
+                    // Assessments without a weight share what the others leave (see FinalGrades)
+                    String weight = assessment.length >= 5 && !assessment[4].trim().isEmpty() ? assessment[4] : "-";
+                    rows.accept(new Object[]{assessment[0], assessment[1], assessment[2], assessment[3], weight});
+                }
             }
-        }
+        }, null);
     }
 
     private void showAddAssessmentDialog() {
@@ -457,6 +473,7 @@ public class LecturerDashboard extends JFrame {
         JComboBox<String> typeCombo = new JComboBox<>(new String[]{"Quiz", "Assignment", "Exam", "Project"});
         typeCombo.setBackground(Color.WHITE);
         JTextField maxMarksField = new JTextField(20);
+        JTextField weightField = new JTextField(20);
 
         gbc.gridx = 0; gbc.gridy = 0;
         panel.add(new JLabel("Title:"), gbc);
@@ -473,6 +490,11 @@ public class LecturerDashboard extends JFrame {
         gbc.gridx = 1;
         panel.add(maxMarksField, gbc);
 
+        gbc.gridx = 0; gbc.gridy = 3;
+        panel.add(new JLabel("Weight % (optional):"), gbc);
+        gbc.gridx = 1;
+        panel.add(weightField, gbc);
+
         JPanel buttonPanel = new JPanel();
         buttonPanel.setBackground(BG_COLOR);
         
@@ -482,13 +504,31 @@ public class LecturerDashboard extends JFrame {
             String type = (String) typeCombo.getSelectedItem();
             String maxMarks = maxMarksField.getText().trim();
 
+            String weight = weightField.getText().trim();
+
             if (title.isEmpty() || maxMarks.isEmpty()) {
-                JOptionPane.showMessageDialog(dialog, "All fields are required!", "Error", JOptionPane.ERROR_MESSAGE);
+                JOptionPane.showMessageDialog(dialog, "Title and max marks are required!", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+
+            try {
+                if (Double.parseDouble(maxMarks) <= 0) throw new NumberFormatException();
+                if (!weight.isEmpty()) {
+                    double w = Double.parseDouble(weight);
+                    if (w < 0 || w > 100) throw new NumberFormatException();
+                }
+            } catch (NumberFormatException ex) {
+                JOptionPane.showMessageDialog(dialog, "Max marks must be a positive number and weight between 0 and 100!",
+                    "Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
             String assessmentId = generateAssessmentId();
-            FileHandler.appendLine("assessments.txt", assessmentId, currentModuleId, title, maxMarks);
+            if (weight.isEmpty()) {
+                FileHandler.appendLine("assessments.txt", assessmentId, currentModuleId, title, maxMarks);
+            } else {
+                FileHandler.appendLine("assessments.txt", assessmentId, currentModuleId, title, maxMarks, weight);
+            }
             loadAssessmentData();
             dialog.dispose();
             JOptionPane.showMessageDialog(this, "Assessment added successfully!", "Success", JOptionPane.INFORMATION_MESSAGE);
@@ -500,13 +540,53 @@ public class LecturerDashboard extends JFrame {
         buttonPanel.add(saveButton);
         buttonPanel.add(cancelButton);
 
-        gbc.gridx = 0; gbc.gridy = 3; gbc.gridwidth = 2;
+        gbc.gridx = 0; gbc.gridy = 4; gbc.gridwidth = 2;
         panel.add(buttonPanel, gbc);
 
         dialog.add(panel);
         dialog.setVisible(true);
     }
 
+    // Weighted final marks of every student in the module
+    private void showFinalGradesDialog() {
+        String moduleId = currentModuleId;
+        JDialog dialog = new JDialog(this, "Final Grades - " + currentModuleId, true);
+        dialog.setSize(500, 450);
+        dialog.setLocationRelativeTo(this);
+
+        String[] columns = {"Student ID", "Student Name", "Final %", "Grade"};
+        DefaultTableModel model = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) { return false; }
+
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return column == 2 ? Double.class : String.class;
+            }
+        };
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        JScrollPane scrollPane = new JScrollPane(table);
+        styleTable(table, scrollPane);
+
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        panel.setBackground(BG_COLOR);
+        panel.add(scrollPane, BorderLayout.CENTER);
+        dialog.add(panel);
+        // Computing the grades of a large module on a cold cache takes a while
+        AsyncLoader.load(table, model, rows -> {
+            FinalGrades.ModuleGrades finalGrades = FinalGrades.forModule(moduleId);
+            for (int i = 0; i < finalGrades.size(); i++) {
+                String[] user = FileHandler.findRecord("users.txt", finalGrades.studentId(i));
+                String name = user != null && user.length >= 4 ? user[3] : "";
+                rows.accept(new Object[]{finalGrades.studentId(i), name,
+                    Math.round(finalGrades.percentage(i) * 100) / 100.0, finalGrades.grade(i)});
+            }
+        }, null);
+        dialog.setVisible(true);
+    }
+
     private String generateAssessmentId() {
         List<String[]> assessments = FileHandler.getAllRecords("assessments.txt");
         int maxNum = 0;
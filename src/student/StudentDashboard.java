@@ -8,13 +8,18 @@ import javax.swing.table.*;
 import java.awt.*;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 
 public class StudentDashboard extends JFrame {
     private JTabbedPane tabbedPane;
+    private LazyTabs lazyTabs;
     private JTable classTable;
     private JTable resultsTable;
     private DefaultTableModel classTableModel;
     private DefaultTableModel resultsTableModel;
+    private DefaultTableModel transcriptTableModel;
+    private JLabel gpaLabel;
     private String currentStudentId;
 
     // UI Constants
@@ -32,7 +37,6 @@ public class StudentDashboard extends JFrame {
         setLocationRelativeTo(null);
 
         initComponents();
-        loadData();
     }
 
     private void initComponents() {
@@ -58,6 +62,7 @@ public class StudentDashboard extends JFrame {
         JButton logoutButton = createStyledButton("Logout", DANGER_COLOR);
         logoutButton.addActionListener(e -> {
             Session.getInstance().logout();
+            lazyTabs.stop();
             dispose();
             new LoginFrame().setVisible(true);
         });
@@ -71,8 +76,17 @@ public class StudentDashboard extends JFrame {
         tabbedPane.setFont(new Font("Arial", Font.PLAIN, 14));
         tabbedPane.setBackground(BG_COLOR);
 
-        tabbedPane.addTab("Enroll in Classes", createEnrollmentPanel());
-        tabbedPane.addTab("My Results", createResultsPanel());
+        // Built and loaded on first use
+        lazyTabs = new LazyTabs(tabbedPane);
+        lazyTabs.add("Enroll in Classes", this::createEnrollmentPanel, this::loadClassData);
+        lazyTabs.add("My Results", this::createResultsPanel, this::loadResultsData);
+        lazyTabs.add("Transcript", this::createTranscriptPanel, this::loadTranscriptData);
+        // Changes made elsewhere, e.g. marks entered by a lecturer
+        lazyTabs.reloadOn("Enroll in Classes", "classes.txt", "enrollments.txt");
+        lazyTabs.reloadOn("My Results", "results.txt", "assessments.txt", "grading.txt");
+        lazyTabs.reloadOn("Transcript", "results.txt", "enrollments.txt", "assessments.txt", "modules.txt",
+            "classes.txt", "grading.txt");
+        lazyTabs.start();
 
         add(tabbedPane, BorderLayout.CENTER);
     }
@@ -187,6 +201,34 @@ public class StudentDashboard extends JFrame {
         return panel;
     }
 
+    private JPanel createTranscriptPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        panel.setBackground(BG_COLOR);
+
+        String[] columns = {"Module ID", "Module Name", "Assessments Done", "Final %", "Grade", "Grade Points"};
+        transcriptTableModel = new DefaultTableModel(columns, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) { return false; }
+        };
+        JTable transcriptTable = new JTable(transcriptTableModel);
+        JScrollPane scrollPane = new JScrollPane(transcriptTable);
+        styleTable(transcriptTable, scrollPane);
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttonPanel.setBackground(BG_COLOR);
+        JButton refreshButton = createStyledButton("Refresh", PRIMARY_COLOR);
+        refreshButton.addActionListener(e -> loadTranscriptData());
+        gpaLabel = new JLabel();
+        gpaLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        buttonPanel.add(refreshButton);
+        buttonPanel.add(Box.createHorizontalStrut(20));
+        buttonPanel.add(gpaLabel);
+        panel.add(buttonPanel, BorderLayout.SOUTH);
+        return panel;
+    }
+
     private void showFeedbackDialog() {
         JDialog dialog = new JDialog(this, "Send Feedback to Lecturer", true);
         dialog.setSize(450, 400);
@@ -200,33 +242,22 @@ public class StudentDashboard extends JFrame {
 
         // 1. Select Lecturer
         JComboBox<String> lecturerCombo = new JComboBox<>();
-        List<String[]> enrollments = FileHandler.getAllRecords("enrollments.txt");
-        List<String[]> classes = FileHandler.getAllRecords("classes.txt");
         List<String[]> modules = FileHandler.getAllRecords("modules.txt");
-        List<String[]> users = FileHandler.getAllRecords("users.txt");
         
         // Find Lecturers for enrolled classes
-        for(String[] enroll : enrollments) {
-            if(enroll[0].equals(currentStudentId)) {
-                for(String[] cls : classes) {
-                    if(cls[0].equals(enroll[1])) {
-                        for(String[] mod : modules) {
-                            if(mod[0].equals(cls[2])) {
-                                String lecturerId = mod[2];
-                                for(String[] u : users) {
-                                    if(u[0].equals(lecturerId)) {
-                                        String item = u[0] + " - " + u[3] + " (" + mod[1] + ")"; // ID - Name (Module)
-                                        boolean exists = false;
-                                        for(int i=0; i<lecturerCombo.getItemCount(); i++) 
-                                            if(lecturerCombo.getItemAt(i).equals(item)) exists = true;
-                                        if(!exists) lecturerCombo.addItem(item);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
+        for(String[] enroll : FileHandler.findRecords("enrollments.txt", 0, currentStudentId)) {
+            if(enroll.length < 2) continue;
+            String[] cls = FileHandler.findRecord("classes.txt", enroll[1]);
+            if(cls == null || cls.length < 3) continue;
+            String[] mod = FileHandler.findRecord("modules.txt", cls[2]);
+            if(mod == null || mod.length < 3) continue;
+            String[] u = FileHandler.findRecord("users.txt", mod[2]);
+            if(u == null) continue;
+            String item = u[0] + " - " + u[3] + " (" + mod[1] + ")"; // ID - Name (Module)
+            boolean exists = false;
+            for(int i=0; i<lecturerCombo.getItemCount(); i++) 
+                if(lecturerCombo.getItemAt(i).equals(item)) exists = true;
+            if(!exists) lecturerCombo.addItem(item);
         }
 
         // 2. Select Context (General or Specific Assessment)
@@ -300,78 +331,77 @@ public class StudentDashboard extends JFrame {
         dialog.setVisible(true);
     }
 
-    private void loadData() {
-        loadClassData();
-        loadResultsData();
+    // Each table is read on a background thread and filled in as its rows arrive
+    private void loadTranscriptData() {
+        // Not opened yet; loads when it is
+        if (transcriptTableModel == null) return;
+        Transcripts.Transcript[] loaded = new Transcripts.Transcript[1];
+        gpaLabel.setText("GPA: -");
+        AsyncLoader.load(gpaLabel, transcriptTableModel, rows -> {
+            Transcripts.Transcript transcript = Transcripts.forStudent(currentStudentId);
+            for (Transcripts.ModuleLine line : transcript.modules) {
+                boolean graded = line.grade != null;
+                rows.accept(new Object[]{
+                    line.moduleId, line.moduleName, line.completed + " / " + line.assessments,
+                    graded ? String.format("%.2f", line.percentage) : "-",
+                    graded ? line.grade : "In progress",
+                    Double.isNaN(line.points) ? "-" : String.format("%.2f", line.points)
+                });
+            }
+            loaded[0] = transcript;
+        }, () -> {
+            double gpa = loaded[0].gpa;
+            gpaLabel.setText(Double.isNaN(gpa) ? "GPA: -" : String.format("GPA: %.2f", gpa));
+        });
     }
 
     private void loadClassData() {
-        classTableModel.setRowCount(0);
-        List<String[]> classes = FileHandler.getAllRecords("classes.txt");
-        List<String[]> enrollments = FileHandler.getAllRecords("enrollments.txt");
-
-        for (String[] cls : classes) {
-            if (cls.length >= 3) {
-                boolean enrolled = false;
-                for (String[] enrollment : enrollments) {
-                    if (enrollment.length >= 2 && 
-                        enrollment[0].equals(currentStudentId) && 
-                        enrollment[1].equals(cls[0])) {
-                        enrolled = true;
-                        break;
-                    }
+        AsyncLoader.load(classTable, classTableModel, rows -> {
+            List<String[]> classes = FileHandler.getAllRecords("classes.txt");
+            Set<String> enrolledClasses = new HashSet<>();
+            for (String[] enrollment : FileHandler.findRecords("enrollments.txt", 0, currentStudentId)) {
+                if (enrollment.length >= 2) enrolledClasses.add(enrollment[1]);
+            }
+
+            for (String[] cls : classes) {
+                if (cls.length >= 3) {
+                    boolean enrolled = enrolledClasses.contains(cls[0]);
+                    String status = enrolled ? "Enrolled" : "Not Enrolled";
+                    rows.accept(new Object[]{cls[0], cls[1], cls[2], status});
                 }
-                
-                String status = enrolled ? "Enrolled" : "Not Enrolled";
-                classTableModel.addRow(new Object[]{cls[0], cls[1], cls[2], status});
             }
-        }
+        }, null);
     }
 
     private void loadResultsData() {
-        resultsTableModel.setRowCount(0);
-        List<String[]> results = FileHandler.getAllRecords("results.txt");
-        List<String[]> assessments = FileHandler.getAllRecords("assessments.txt");
-        List<String[]> grading = FileHandler.getAllRecords("grading.txt");
-
-        for (String[] result : results) {
-            if (result.length >= 4 && result[1].equals(currentStudentId)) {
-                String assessmentId = result[0];
-                String marks = result[2];
-                String feedback = result[3];
-                
-                String assessmentTitle = "";
-                String maxMarks = "";
-                
-                for (String[] assessment : assessments) {
-                    if (assessment.length >= 4 && assessment[0].equals(assessmentId)) {
+        AsyncLoader.load(resultsTable, resultsTableModel, rows -> {
+            List<String[]> results = FileHandler.findRecords("results.txt", 1, currentStudentId);
+            GradeScale scale = GradeScale.current();
+
+            for (String[] result : results) {
+                if (result.length >= 4) {
+                    String assessmentId = result[0];
+                    String marks = result[2];
+                    String feedback = result[3];
+
+                    String assessmentTitle = "";
+                    String maxMarks = "";
+
+                    String[] assessment = FileHandler.findRecord("assessments.txt", assessmentId);
+                    if (assessment != null && assessment.length >= 4) {
                         assessmentTitle = assessment[2];
                         maxMarks = assessment[3];
-                        break;
                     }
-                }
-                
-                String grade = calculateGrade(marks, grading);
-                
-                resultsTableModel.addRow(new Object[]{
-                    assessmentId, assessmentTitle, marks, maxMarks, grade, feedback
-                });
-            }
-        }
-    }
 
-    private String calculateGrade(String marksStr, List<String[]> grading) {
-        try {
-            double marks = Double.parseDouble(marksStr);
-            for (String[] grade : grading) {
-                if (grade.length >= 3) {
-                    double min = Double.parseDouble(grade[1]);
-                    double max = Double.parseDouble(grade[2]);
-                    if (marks >= min && marks <= max) return grade[0];
+                    // Graded on the percentage of the assessment's max marks
+                    String grade = scale.grade(marks, maxMarks);
+
+                    rows.accept(new Object[]{
+                        assessmentId, assessmentTitle, marks, maxMarks, grade, feedback
+                    });
                 }
             }
-        } catch (NumberFormatException e) { }
-        return "N/A";
+        }, null);
     }
 
     private void enrollInClass() {
@@ -399,6 +429,7 @@ public class StudentDashboard extends JFrame {
         if (confirm == JOptionPane.YES_OPTION) {
             FileHandler.appendLine("enrollments.txt", currentStudentId, classId);
             loadClassData();
+            loadTranscriptData();
             JOptionPane.showMessageDialog(this, "Enrolled successfully!", 
                 "Success", JOptionPane.INFORMATION_MESSAGE);
         }
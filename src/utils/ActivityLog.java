@@ -0,0 +1,316 @@
+package utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Rotation and time-range reads for the activity log. activity_log.txt is the active segment;
+// once it passes the size limit or a new day starts, Logger's writer moves it into
+// data/logs/ as a closed segment, optionally gzipped. data/logs/index.txt keeps, per closed
+// segment, its timestamp range and a sparse list of (timestamp, offset) points, so a range
+// query only opens the segments it overlaps and starts reading close to the first match.
+//
+// Index format:
+//   S | <segment file> | <min timestamp> | <max timestamp>
+//   P | <timestamp> | <uncompressed byte offset>     every SPARSE_EVERY lines of the segment above
+public class ActivityLog {
+    private static final String LOG_FILE = "activity_log.txt";
+    private static final String SEGMENT_DIR = "logs/";
+    private static final String INDEX = SEGMENT_DIR + "index.txt";
+    private static final int SPARSE_EVERY = 1000;
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter SEGMENT_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    // Entries are timestamped before they are queued, so the file is only ordered to within
+    // about a second; range boundaries are widened by this much when skipping
+    private static final long SLACK_SECONDS = 1;
+
+    private static volatile long maxSegmentBytes = 4L * 1024 * 1024;
+    private static volatile boolean daily = true;
+    private static volatile boolean gzip = true;
+
+    private static class Segment {
+        final String file;
+        final String min;
+        final String max;
+        final List<String> points = new ArrayList<>();
+        final List<Long> offsets = new ArrayList<>();
+
+        Segment(String file, String min, String max) {
+            this.file = file;
+            this.min = min;
+            this.max = max;
+        }
+    }
+
+    private static List<Segment> segments;
+    private static long indexLength = -1;
+    // Timestamp of the first entry in the active segment, read lazily
+    private static String activeSince;
+
+    private ActivityLog() {
+    }
+
+    public static void configure(long segmentBytes, boolean rotateDaily, boolean gzipClosedSegments) {
+        maxSegmentBytes = segmentBytes;
+        daily = rotateDaily;
+        gzip = gzipClosedSegments;
+    }
+
+    // Visits the entries with from <= timestamp <= to, oldest first. Either bound may be null.
+    public static void readRange(LocalDateTime from, LocalDateTime to, RecordVisitor visitor) {
+        String lo = from == null ? null : from.format(TIMESTAMP);
+        String hi = to == null ? null : to.format(TIMESTAMP);
+        String skipBefore = from == null ? null : from.minusSeconds(SLACK_SECONDS).format(TIMESTAMP);
+        String stopAfter = to == null ? null : to.plusSeconds(SLACK_SECONDS).format(TIMESTAMP);
+
+        // Held throughout so a rotation cannot move entries between the segments and the active file mid-read
+        synchronized (ActivityLog.class) {
+            readRange(segments(), lo, hi, skipBefore, stopAfter, visitor, true);
+        }
+    }
+
+    // Visits entries from the closed segments only; LogTailer reads the active file itself.
+    // Callers hold the ActivityLog monitor.
+    static boolean readClosed(LocalDateTime from, RecordVisitor visitor) {
+        String lo = from == null ? null : from.format(TIMESTAMP);
+        String skipBefore = from == null ? null : from.minusSeconds(SLACK_SECONDS).format(TIMESTAMP);
+        return readRange(segments(), lo, null, skipBefore, null, visitor, false);
+    }
+
+    // Returns false if the visitor stopped the read.
+    private static boolean readRange(List<Segment> closed, String lo, String hi, String skipBefore, String stopAfter,
+                                     RecordVisitor visitor, boolean includeActive) {
+        boolean[] stopped = {false};
+        RecordVisitor filter = record -> {
+            if (record.fieldCount() == 0) return true;
+            CharSequence ts = record.field(0);
+            if (stopAfter != null && CharSequence.compare(ts, stopAfter) > 0) return false;
+            if (lo != null && CharSequence.compare(ts, lo) < 0) return true;
+            if (hi != null && CharSequence.compare(ts, hi) > 0) return true;
+            if (visitor.visit(record)) return true;
+            stopped[0] = true;
+            return false;
+        };
+
+        for (Segment segment : closed) {
+            if (lo != null && segment.max.compareTo(lo) < 0) continue;
+            if (hi != null && segment.min.compareTo(hi) > 0) break;
+            long offset = 0;
+            for (int i = 0; skipBefore != null && i < segment.points.size(); i++) {
+                if (segment.points.get(i).compareTo(skipBefore) >= 0) break;
+                offset = segment.offsets.get(i);
+            }
+            try (Reader reader = new InputStreamReader(open(segment.file, offset), StandardCharsets.UTF_8)) {
+                RecordParser.scan(reader, filter);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (stopped[0]) return false;
+        }
+        if (includeActive) FileHandler.forEachRecord(LOG_FILE, filter);
+        return !stopped[0];
+    }
+
+    private static InputStream open(String segment, long offset) throws IOException {
+        InputStream in = new FileInputStream(FileHandler.dataFile(SEGMENT_DIR + segment));
+        if (segment.endsWith(".gz")) in = new GZIPInputStream(in, 64 * 1024);
+        in = new BufferedInputStream(in, 64 * 1024);
+        in.skipNBytes(offset);
+        return in;
+    }
+
+    // Called by Logger's writer before it appends a group whose first entry has this
+    // timestamp. Closes the active segment if it is full or belongs to an earlier day.
+    static void rotateIfNeeded(String nextTimestamp) {
+        File active = FileHandler.dataFile(LOG_FILE);
+        if (active.length() == 0 || Journal.hasPending(LOG_FILE)) return;
+        synchronized (ActivityLog.class) {
+            if (activeSince == null) activeSince = firstTimestamp(active);
+            boolean full = active.length() >= maxSegmentBytes;
+            boolean newDay = daily && activeSince != null
+                && !activeSince.regionMatches(0, nextTimestamp, 0, 10);
+            if (!full && !newDay) return;
+            // A scan still mapping the active log would make the move fail; rotate next time
+            if (!MappedRecordReader.awaitUnread(active)) return;
+            try {
+                segments();
+                File dir = FileHandler.dataFile(SEGMENT_DIR);
+                dir.mkdirs();
+                String name = segmentName(activeSince);
+                Files.move(active.toPath(), new File(dir, name).toPath(), StandardCopyOption.ATOMIC_MOVE);
+                activeSince = null;
+                seal(name);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static String segmentName(String since) {
+        String stamp;
+        try {
+            stamp = LocalDateTime.parse(since, TIMESTAMP).format(SEGMENT_NAME);
+        } catch (RuntimeException e) {
+            stamp = LocalDateTime.now().format(SEGMENT_NAME);
+        }
+        String name = "activity-" + stamp + ".txt";
+        for (int n = 1; segmentExists(name); n++) name = "activity-" + stamp + "-" + n + ".txt";
+        return name;
+    }
+
+    private static boolean segmentExists(String name) {
+        return FileHandler.dataFile(SEGMENT_DIR + name).exists() || FileHandler.dataFile(SEGMENT_DIR + name + ".gz").exists();
+    }
+
+    private static String firstTimestamp(File file) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = RecordParser.split(line);
+                if (fields.length > 0 && !fields[0].isEmpty()) return fields[0];
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    // Indexes a closed segment (gzipping it first if enabled) and records it in the index.
+    // The plain file is only removed once the index names the gzipped copy.
+    private static void seal(String name) throws IOException {
+        File plain = FileHandler.dataFile(SEGMENT_DIR + name);
+        File tmp = FileHandler.dataFile(SEGMENT_DIR + name + ".gz.tmp");
+        Segment segment;
+        if (gzip) {
+            try (OutputStream out = new GZIPOutputStream(new FileOutputStream(tmp), 64 * 1024)) {
+                segment = scan(plain, name + ".gz", out);
+            }
+        } else {
+            segment = scan(plain, name, null);
+        }
+        if (segment == null) {
+            // Nothing but blank lines
+            tmp.delete();
+            plain.delete();
+            return;
+        }
+        if (gzip) Files.move(tmp.toPath(), FileHandler.dataFile(SEGMENT_DIR + segment.file).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(FileHandler.dataFile(INDEX), StandardCharsets.UTF_8, true))) {
+            writer.write("S | " + segment.file + " | " + segment.min + " | " + segment.max);
+            writer.newLine();
+            for (int i = 0; i < segment.points.size(); i++) {
+                writer.write("P | " + segment.points.get(i) + " | " + segment.offsets.get(i));
+                writer.newLine();
+            }
+        }
+        if (gzip) plain.delete();
+        segments.add(segment);
+        segments.sort(Comparator.comparing(s -> s.min));
+        indexLength = FileHandler.dataFile(INDEX).length();
+    }
+
+    // One pass over a plain segment: collects the timestamp range and sparse points, and
+    // copies the bytes to out if given.
+    private static Segment scan(File file, String name, OutputStream out) throws IOException {
+        String min = null;
+        String max = null;
+        List<String> points = new ArrayList<>();
+        List<Long> offsets = new ArrayList<>();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long offset = 0;
+            long lineStart = 0;
+            int lines = 0;
+            int b;
+            while (true) {
+                b = in.read();
+                if (b != -1 && b != '\n' && b != '\r') {
+                    line.write(b);
+                    offset++;
+                    continue;
+                }
+                if (line.size() > 0) {
+                    String[] fields = RecordParser.split(line.toString(StandardCharsets.UTF_8));
+                    if (fields.length > 0 && !fields[0].trim().isEmpty()) {
+                        String ts = fields[0];
+                        if (min == null || ts.compareTo(min) < 0) min = ts;
+                        if (max == null || ts.compareTo(max) > 0) max = ts;
+                        if (lines++ % SPARSE_EVERY == 0) {
+                            points.add(ts);
+                            offsets.add(lineStart);
+                        }
+                    }
+                    if (out != null) line.writeTo(out);
+                    line.reset();
+                }
+                if (b == -1) break;
+                if (out != null) out.write(b);
+                offset++;
+                lineStart = offset;
+            }
+        }
+        if (min == null) return null;
+        Segment segment = new Segment(name, min, max);
+        segment.points.addAll(points);
+        segment.offsets.addAll(offsets);
+        return segment;
+    }
+
+    // The closed segments in time order, loaded from the index. Segments that were moved into
+    // data/logs but never made it into the index (the process stopped half way) are sealed here.
+    private static List<Segment> segments() {
+        File index = FileHandler.dataFile(INDEX);
+        if (segments != null && index.length() == indexLength) return segments;
+        segments = new ArrayList<>();
+        Set<String> known = new HashSet<>();
+        if (index.exists()) {
+            try (BufferedReader reader = new BufferedReader(new FileReader(index, StandardCharsets.UTF_8))) {
+                String line;
+                Segment current = null;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = RecordParser.split(line);
+                    if (parts.length == 4 && parts[0].equals("S")) {
+                        current = new Segment(parts[1], parts[2], parts[3]);
+                        segments.add(current);
+                        known.add(current.file);
+                    } else if (parts.length == 3 && parts[0].equals("P") && current != null) {
+                        current.points.add(parts[1]);
+                        current.offsets.add(Long.parseLong(parts[2]));
+                    }
+                }
+            } catch (IOException | NumberFormatException e) {
+                e.printStackTrace();
+            }
+        }
+        indexLength = index.length();
+
+        File[] files = FileHandler.dataFile(SEGMENT_DIR).listFiles();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName();
+                if (name.endsWith(".gz.tmp")) {
+                    file.delete();
+                } else if (name.startsWith("activity-") && name.endsWith(".txt") && known.contains(name + ".gz")) {
+                    // Already gzipped and indexed; only the plain copy was left behind
+                    file.delete();
+                } else if (name.startsWith("activity-") && name.endsWith(".txt") && !known.contains(name)) {
+                    try {
+                        FileHandler.dataFile(SEGMENT_DIR + name + ".gz").delete();
+                        seal(name);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+        segments.sort(Comparator.comparing(s -> s.min));
+        return segments;
+    }
+}
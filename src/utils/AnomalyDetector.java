@@ -0,0 +1,164 @@
+package utils;
+
+import java.util.*;
+
+// Flags marks that look like typing mistakes, such as 850 entered for 85. A mark is suspicious
+// if it is outside 0..maxMarks of its assessment, or an outlier among the assessment's other
+// marks: more than Z_LIMIT standard deviations from the mean, or more than IQR_FACTOR
+// interquartile ranges outside the quartiles. The outlier tests need MIN_SAMPLE marks.
+//
+// check() runs when a mark is entered and only looks at the maintained aggregates
+// (ResultAggregates), so it costs the same however many results there are. audit() goes
+// through every stored result in one parallel pass and lists the suspicious ones.
+public class AnomalyDetector {
+    private static final String ASSESSMENTS_FILE = "assessments.txt";
+    static final double Z_LIMIT = 3;
+    // Tukey's "far out" fences
+    static final double IQR_FACTOR = 3;
+    static final int MIN_SAMPLE = 10;
+
+    // One suspicious result found by audit().
+    public static final class Finding {
+        public final String assessmentId;
+        public final String studentId;
+        public final String mark;
+        public final String reason;
+
+        Finding(String assessmentId, String studentId, String mark, String reason) {
+            this.assessmentId = assessmentId;
+            this.studentId = studentId;
+            this.mark = mark;
+            this.reason = reason;
+        }
+    }
+
+    // The bounds outside of which a mark for one assessment is suspicious, worked out once
+    // from its maximum and statistics so that every check is a few comparisons.
+    private static final class Limits {
+        final double maxMarks;      // NaN if unknown
+        final double mean;
+        final double stddev;
+        final double zLow, zHigh;   // NaN without enough marks
+        final double q1, q3;
+        final double iqrLow, iqrHigh;
+
+        Limits(double maxMarks, MarkStatistics stats) {
+            this.maxMarks = maxMarks;
+            this.mean = stats.mean();
+            this.stddev = stats.stddev();
+            boolean enough = stats.count() >= MIN_SAMPLE;
+            if (enough && stddev > 0) {
+                zLow = mean - Z_LIMIT * stddev;
+                zHigh = mean + Z_LIMIT * stddev;
+            } else {
+                zLow = zHigh = Double.NaN;
+            }
+            // The quartiles come from the sketch, which only resolves marks within its range; with
+            // most marks the same the fences would flag every other mark
+            double q1 = Double.NaN, q3 = Double.NaN;
+            if (enough && stats.min() >= stats.low() && stats.max() <= stats.high()) {
+                q1 = stats.quantile(0.25);
+                q3 = stats.quantile(0.75);
+            }
+            if (q3 > q1) {
+                this.q1 = q1;
+                this.q3 = q3;
+                iqrLow = q1 - IQR_FACTOR * (q3 - q1);
+                iqrHigh = q3 + IQR_FACTOR * (q3 - q1);
+            } else {
+                this.q1 = this.q3 = iqrLow = iqrHigh = Double.NaN;
+            }
+        }
+
+        // Why the mark is suspicious, or null if it is not
+        String reason(double mark) {
+            if (mark < 0) return "Negative mark";
+            if (!Double.isNaN(maxMarks) && mark > maxMarks) {
+                return String.format(Locale.ROOT, "Above the maximum of %s", number(maxMarks));
+            }
+            if (!Double.isNaN(zLow) && (mark < zLow || mark > zHigh)) {
+                return String.format(Locale.ROOT, "%.1f standard deviations from the average of %.1f",
+                    Math.abs(mark - mean) / stddev, mean);
+            }
+            if (!Double.isNaN(iqrLow) && (mark < iqrLow || mark > iqrHigh)) {
+                return String.format(Locale.ROOT, "Far outside the middle half of marks (%s to %s)",
+                    number(q1), number(q3));
+            }
+            return null;
+        }
+    }
+
+    private AnomalyDetector() {
+    }
+
+    // Why a mark about to be entered for the assessment looks wrong, or null if it looks fine.
+    public static String check(String assessmentId, double mark) {
+        String[] assessment = FileHandler.findRecord(ASSESSMENTS_FILE, assessmentId);
+        return new Limits(maxMarks(assessment), ResultAggregates.forAssessment(assessmentId)).reason(mark);
+    }
+
+    // Every suspicious result of the given assessments (all of them if null), in file order.
+    // Returns null if the pass was cancelled.
+    public static List<Finding> audit(Collection<String> assessmentIds, ReportService.Progress progress) {
+        Map<String, Double> maxMarks = new HashMap<>();
+        for (String[] assessment : FileHandler.getAllRecords(ASSESSMENTS_FILE)) {
+            maxMarks.putIfAbsent(assessment[0], maxMarks(assessment));
+        }
+        Map<String, MarkStatistics> all = ResultAggregates.all(progress);
+        // Assessments without statistics have no numeric marks, but their other marks are findings
+        Set<String> ids = new HashSet<>();
+        if (assessmentIds != null) {
+            ids.addAll(assessmentIds);
+        } else {
+            ids.addAll(all.keySet());
+            ids.addAll(maxMarks.keySet());
+        }
+        Map<String, Limits> limits = new HashMap<>();
+        for (String id : ids) {
+            MarkStatistics stats = all.get(id);
+            limits.put(id, new Limits(maxMarks.getOrDefault(id, Double.NaN), stats != null ? stats : new MarkStatistics()));
+        }
+        // Results of assessments that are not in assessments.txt, when auditing all of them
+        Limits unknown = assessmentIds == null ? new Limits(Double.NaN, new MarkStatistics()) : null;
+
+        return ReportService.scanResults(new ReportService.Pass<List<Finding>>() {
+            public List<Finding> empty() {
+                return new ArrayList<>();
+            }
+
+            public void add(List<Finding> partial, RecordView record) {
+                if (record.fieldCount() < 3) return;
+                Limits found = limits.getOrDefault(record.getString(0), unknown);
+                if (found == null) return;
+                String mark = record.getString(2);
+                String reason;
+                try {
+                    reason = found.reason(Double.parseDouble(mark));
+                } catch (NumberFormatException e) {
+                    reason = "Not a number";
+                }
+                if (reason != null) partial.add(new Finding(record.getString(0), record.getString(1), mark, reason));
+            }
+
+            // Partitions are merged left to right, so the findings stay in file order
+            public List<Finding> merge(List<Finding> into, List<Finding> from) {
+                into.addAll(from);
+                return into;
+            }
+        }, progress);
+    }
+
+    private static double maxMarks(String[] assessment) {
+        if (assessment == null || assessment.length < 4) return Double.NaN;
+        try {
+            double max = Double.parseDouble(assessment[3].trim());
+            return max > 0 ? max : Double.NaN;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static String number(double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.format(Locale.ROOT, "%.1f", value);
+    }
+}
@@ -0,0 +1,246 @@
+package utils;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+// Collects appends, updates and deletes across several data files and commits them together.
+// Each file touched is opened once and synced once, instead of once per record as with
+// FileHandler.appendLine. The commit is all-or-nothing: before anything is written, the
+// current length of every target file goes into data/.batch, and if the commit fails (or
+// the process dies half way) the files are truncated back to those lengths. A commit holds a
+// lock on data/.batch.lock throughout, so a process starting meanwhile does not take its
+// intent file for one left behind.
+//
+//   Batch batch = new Batch();
+//   batch.append("users.txt", ...);
+//   batch.update("modules.txt", 0, moduleId, ...);
+//   batch.commit();
+//
+// Updates and deletes are applied in order after the appends before them, and like
+// FileHandler.updateLine they affect every record whose key column matches.
+public class Batch {
+    private static final String INTENT = ".batch";
+
+    private final Map<String, List<Journal.Mutation>> pending = new LinkedHashMap<>();
+
+    public Batch append(String filename, String... data) {
+        return add(filename, Journal.Mutation.append(data));
+    }
+
+    public Batch update(String filename, int idIndex, String idValue, String... newData) {
+        return add(filename, Journal.Mutation.update(new int[]{idIndex}, new String[]{idValue}, newData));
+    }
+
+    public Batch delete(String filename, int idIndex, String idValue) {
+        return add(filename, Journal.Mutation.delete(new int[]{idIndex}, new String[]{idValue}));
+    }
+
+    private Batch add(String filename, Journal.Mutation mutation) {
+        pending.computeIfAbsent(filename, k -> new ArrayList<>()).add(mutation);
+        return this;
+    }
+
+    public int size() {
+        int size = 0;
+        for (List<Journal.Mutation> mutations : pending.values()) size += mutations.size();
+        return size;
+    }
+
+    // Writes everything or nothing. Returns false if the batch was rolled back.
+    public boolean commit() {
+        if (pending.isEmpty()) return true;
+        synchronized (RecordStore.LOCK) {
+            // Other processes keep off the files until the batch is in; sorted, so that two
+            // batches over the same files cannot wait for each other
+            FileChannel batchLock = null;
+            Map<String, FileChannel> locks = new LinkedHashMap<>();
+            try {
+                batchLock = openLock();
+                batchLock.lock();
+                for (String filename : new TreeSet<>(pending.keySet())) locks.put(filename, Journal.lock(filename));
+                return commitLocked();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            } finally {
+                for (Map.Entry<String, FileChannel> lock : locks.entrySet()) Journal.unlock(lock.getKey(), lock.getValue());
+                if (batchLock != null) close(batchLock);
+            }
+        }
+    }
+
+    // Called holding the locks of every file in the batch.
+    private boolean commitLocked() throws IOException {
+        // Left over from a compaction that died: must go before the lengths are recorded
+        for (String filename : pending.keySet()) Journal.recover(filename);
+
+        // Pure appends to a file without a pending journal go straight to the file; anything
+        // else goes through the journal so replay keeps the order
+        Map<String, File> targets = new LinkedHashMap<>();
+        Map<String, Boolean> cached = new HashMap<>();
+        for (Map.Entry<String, List<Journal.Mutation>> entry : pending.entrySet()) {
+            String filename = entry.getKey();
+            boolean appendsOnly = !Journal.hasPending(filename);
+            for (Journal.Mutation mutation : entry.getValue()) {
+                if (mutation.op != 'A') appendsOnly = false;
+            }
+            targets.put(filename, appendsOnly ? FileHandler.dataFile(filename) : Journal.journalFile(filename));
+            cached.put(filename, RecordStore.isFresh(filename));
+        }
+
+        Map<File, Long> lengths = new LinkedHashMap<>();
+        for (File target : targets.values()) lengths.put(target, target.exists() ? target.length() : -1L);
+        // Where the rows appended straight to a base file start, for its persisted indexes
+        Map<String, long[]> offsets = new HashMap<>();
+        try {
+            writeIntent(lengths);
+            for (Map.Entry<String, File> entry : targets.entrySet()) {
+                String filename = entry.getKey();
+                List<Journal.Mutation> mutations = pending.get(filename);
+                if (entry.getValue().equals(FileHandler.dataFile(filename))) {
+                    offsets.put(filename, writeLines(entry.getValue(), mutations));
+                } else {
+                    Journal.writeAll(filename, mutations, true);
+                }
+            }
+            intentFile().delete();
+        } catch (IOException e) {
+            e.printStackTrace();
+            rollback(lengths);
+            intentFile().delete();
+            for (String filename : targets.keySet()) RecordStore.untracked(filename);
+            return false;
+        }
+
+        for (String filename : targets.keySet()) {
+            if (offsets.containsKey(filename)) {
+                List<String[]> rows = new ArrayList<>();
+                for (Journal.Mutation mutation : pending.get(filename)) rows.add(mutation.data);
+                IndexFile.appended(filename, rows, offsets.get(filename), FileHandler.dataFile(filename).length());
+            }
+            boolean fresh = cached.get(filename);
+            for (Journal.Mutation mutation : pending.get(filename)) {
+                RecordStore.written(filename, mutation, fresh, null);
+            }
+        }
+        pending.clear();
+        return true;
+    }
+
+    // Appends the rows and returns the offset at which each of them starts.
+    private static long[] writeLines(File file, List<Journal.Mutation> mutations) throws IOException {
+        long[] offsets = new long[mutations.size()];
+        long offset = file.exists() ? file.length() : 0;
+        try (FileOutputStream out = new FileOutputStream(file, true);
+             BufferedOutputStream writer = new BufferedOutputStream(out)) {
+            for (int i = 0; i < offsets.length; i++) {
+                byte[] line = (String.join(" | ", mutations.get(i).data) + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+                offsets[i] = offset;
+                writer.write(line);
+                offset += line.length;
+            }
+            writer.flush();
+            out.getFD().sync();
+        }
+        return offsets;
+    }
+
+    private static File intentFile() {
+        return FileHandler.dataFile(INTENT);
+    }
+
+    private static FileChannel openLock() throws IOException {
+        return FileChannel.open(FileHandler.dataFile(INTENT + ".lock").toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    private static void close(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // <file> | <length before the batch, or -1 if it did not exist>, closed by an "# end" line
+    private static void writeIntent(Map<File, Long> lengths) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(intentFile());
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (Map.Entry<File, Long> entry : lengths.entrySet()) {
+                writer.write(entry.getKey().getName() + " | " + entry.getValue());
+                writer.newLine();
+            }
+            writer.write("# end");
+            writer.newLine();
+            writer.flush();
+            out.getFD().sync();
+        }
+    }
+
+    private static void rollback(Map<File, Long> lengths) {
+        for (Map.Entry<File, Long> entry : lengths.entrySet()) {
+            File file = entry.getKey();
+            long length = entry.getValue();
+            if (length < 0) {
+                file.delete();
+            } else if (file.length() > length) {
+                // Truncating fails on Windows while the file is mapped; try anyway if it stays so
+                MappedRecordReader.awaitUnread(file);
+                try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                    raf.setLength(length);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    // Undoes a commit that did not finish. An intent file without its end marker was cut off
+    // before any data file was touched, so it is simply discarded. Nothing is done while another
+    // process holds the batch lock: its commit is still running.
+    static void recover() {
+        File intent = intentFile();
+        if (!intent.exists()) return;
+        FileChannel lock;
+        try {
+            lock = openLock();
+            if (lock.tryLock() == null) {
+                close(lock);
+                return;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        try {
+            // A commit may have finished between the check and taking the lock
+            if (intent.exists()) rollbackIntent(intent);
+        } finally {
+            close(lock);
+        }
+    }
+
+    private static void rollbackIntent(File intent) {
+        Map<File, Long> lengths = new LinkedHashMap<>();
+        boolean complete = false;
+        try (BufferedReader reader = new BufferedReader(new FileReader(intent, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.equals("# end")) {
+                    complete = true;
+                    break;
+                }
+                int at = line.lastIndexOf(" | ");
+                if (at < 0) break;
+                lengths.put(FileHandler.dataFile(line.substring(0, at)), Long.parseLong(line.substring(at + 3)));
+            }
+        } catch (IOException | NumberFormatException e) {
+            e.printStackTrace();
+        }
+        if (complete) rollback(lengths);
+        intent.delete();
+    }
+}
@@ -0,0 +1,107 @@
+package utils;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+// Watches the data directory so that changes made by other processes sharing it (another
+// instance of the system, a report run) reach this one without polling. Events are collected
+// until the directory has been quiet for a moment, or at most MAX_DELAY_MS, and each changed
+// data file is then handed to RecordStore.refresh once, which applies the change and tells the
+// RecordStore listeners. Events for the journal and temporary files of a data file count as
+// changes to the data file itself. Listeners added here then learn which files another process
+// changed; this process's own writes are left out.
+public class DataWatcher {
+    private static final long QUIET_MS = 200;
+    private static final long MAX_DELAY_MS = 1000;
+
+    private static final List<Consumer<Set<String>>> listeners = new CopyOnWriteArrayList<>();
+    private static Thread thread;
+
+    private DataWatcher() {
+    }
+
+    // Called on the watcher thread with the files another process changed, once per batch.
+    public static void addListener(Consumer<Set<String>> listener) {
+        listeners.add(listener);
+    }
+
+    public static synchronized void start() {
+        if (thread != null) return;
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            FileHandler.dataFile("").toPath().register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            thread = new Thread(() -> watch(service), "data-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void watch(WatchService service) {
+        Set<String> changed = new LinkedHashSet<>();
+        long firstChange = 0;
+        try {
+            while (true) {
+                WatchKey key;
+                if (changed.isEmpty()) {
+                    key = service.take();
+                    firstChange = System.currentTimeMillis();
+                } else {
+                    long wait = Math.min(QUIET_MS, firstChange + MAX_DELAY_MS - System.currentTimeMillis());
+                    key = wait > 0 ? service.poll(wait, TimeUnit.MILLISECONDS) : null;
+                }
+                if (key == null) {
+                    Set<String> external = new LinkedHashSet<>();
+                    for (String filename : changed) {
+                        if (RecordStore.refresh(filename)) external.add(filename);
+                    }
+                    changed.clear();
+                    if (external.isEmpty()) continue;
+                    Set<String> files = Collections.unmodifiableSet(external);
+                    for (Consumer<Set<String>> listener : listeners) listener.accept(files);
+                    continue;
+                }
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == OVERFLOW) {
+                        // Events were lost; the refresh of an unchanged file costs nothing
+                        String[] names = FileHandler.dataFile("").list();
+                        if (names == null) continue;
+                        for (String name : names) {
+                            String filename = dataFileOf(name);
+                            if (filename != null) changed.add(filename);
+                        }
+                        continue;
+                    }
+                    String filename = dataFileOf(event.context().toString());
+                    if (filename != null) changed.add(filename);
+                }
+                if (!key.reset()) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    // The data file a name in the directory belongs to, or null for other files
+    private static String dataFileOf(String name) {
+        for (String suffix : new String[]{".journal.next", ".journal", ".tmp"}) {
+            if (name.endsWith(suffix)) {
+                name = name.substring(0, name.length() - suffix.length());
+                break;
+            }
+        }
+        return name.endsWith(".txt") ? name : null;
+    }
+}
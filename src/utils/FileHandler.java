@@ -1,11 +1,17 @@
 package utils;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
 
 public class FileHandler {
+    public enum UpsertResult { INSERTED, UPDATED, FAILED }
+
     private static final String DATA_DIR = "data/";
+    // Files at least this large are read through MappedRecordReader
+    static final long MAPPED_THRESHOLD = 4L * 1024 * 1024;
 
     static {
         try {
@@ -13,6 +19,8 @@ public class FileHandler {
         } catch (IOException e) {
             e.printStackTrace();
         }
+        // Roll back a batch that was interrupted before it finished committing
+        Batch.recover();
     }
 
     public static List<String> readFile(String filename) {
@@ -24,7 +32,7 @@ public class FileHandler {
                 file.createNewFile();
                 return lines;
             }
-            BufferedReader reader = new BufferedReader(new FileReader(file));
+            BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8));
             String line;
             while ((line = reader.readLine()) != null) {
                 if (!line.trim().isEmpty()) {
@@ -38,76 +46,194 @@ public class FileHandler {
         return lines;
     }
 
+    // While a file has a pending journal, appends go there too so that replay keeps their order.
     public static boolean appendLine(String filename, String... data) {
         String filepath = DATA_DIR + filename;
-        try {
-            File file = new File(filepath);
-            if (!file.exists()) {
-                file.createNewFile();
+        synchronized (RecordStore.LOCK) {
+            FileChannel lock = null;
+            try {
+                // Held from the check for a journal to the append, which a compaction must not split
+                lock = Journal.lock(filename);
+                boolean cached = RecordStore.isFresh(filename);
+                Journal.Mutation mutation = Journal.Mutation.append(data);
+                if (Journal.hasPending(filename)) {
+                    Journal.write(filename, mutation);
+                } else {
+                    File file = new File(filepath);
+                    if (!file.exists()) {
+                        file.createNewFile();
+                    }
+                    long offset = file.length();
+                    BufferedWriter writer = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8, true));
+                    writer.write(String.join(" | ", data));
+                    writer.newLine();
+                    writer.close();
+                    IndexFile.appended(filename, mutation.data, offset, file.length());
+                }
+                RecordStore.written(filename, mutation, cached, null);
+                return true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                RecordStore.untracked(filename);
+                return false;
+            } finally {
+                Journal.unlock(filename, lock);
             }
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file, true));
-            writer.write(String.join(" | ", data));
-            writer.newLine();
-            writer.close();
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
         }
     }
 
+    static File dataFile(String filename) {
+        return new File(DATA_DIR + filename);
+    }
+
+    // Served from the shared RecordStore; the file is only re-read when it changes.
     public static List<String[]> getAllRecords(String filename) {
+        return RecordStore.getAll(filename);
+    }
+
+    // Looks a record up by its column 0 value through the RecordStore's primary index.
+    public static String[] findRecord(String filename, String key) {
+        return RecordStore.findByKey(filename, key);
+    }
+
+    // Records whose column equals the value. Indexed columns (see IndexFile) answer in time
+    // proportional to the number of matching rows instead of scanning the file.
+    public static List<String[]> findRecords(String filename, int column, String value) {
+        return RecordStore.lookup(filename, column, value);
+    }
+
+    static List<String[]> parseFile(String filename) {
         List<String[]> records = new ArrayList<>();
-        List<String> lines = readFile(filename);
-        for (String line : lines) {
-            records.add(line.split(" \\| "));
-        }
+        scanFile(filename, record -> {
+            records.add(record.toArray());
+            return true;
+        });
         return records;
     }
 
-    public static boolean updateLine(String filename, int idIndex, String idValue, String... newData) {
-        String filepath = DATA_DIR + filename;
-        try {
-            List<String> lines = readFile(filename);
-            BufferedWriter writer = new BufferedWriter(new FileWriter(filepath));
-            boolean updated = false;
-            for (String line : lines) {
-                String[] parts = line.split(" \\| ");
-                if (parts.length > idIndex && parts[idIndex].equals(idValue)) {
-                    writer.write(String.join(" | ", newData));
-                    updated = true;
-                } else {
-                    writer.write(line);
+    // Streams every record of a file through the visitor without building a list or
+    // splitting lines with a regex. Pending journal entries are taken into account.
+    public static void forEachRecord(String filename, RecordVisitor visitor) {
+        if (Journal.hasPending(filename)) {
+            RecordParser.scan(RecordStore.getAll(filename), visitor);
+        } else {
+            scanFile(filename, visitor);
+        }
+    }
+
+    // Like forEachRecord, but only visits records whose field at the given column equals one
+    // of the values. On large files the comparison is done on the raw bytes, so non-matching
+    // lines are never decoded.
+    public static void forEachMatching(String filename, int column, Collection<String> values, RecordVisitor visitor) {
+        RecordVisitor filter;
+        if (values instanceof Set && values.size() > MappedRecordReader.LINEAR_VALUES) {
+            // Hash lookup instead of comparing against every value
+            filter = record -> record.fieldCount() <= column
+                || !values.contains(record.getString(column)) || visitor.visit(record);
+        } else {
+            filter = record -> {
+                for (String value : values) {
+                    if (record.fieldEquals(column, value)) return visitor.visit(record);
                 }
-                writer.newLine();
+                return true;
+            };
+        }
+        if (Journal.hasPending(filename)) {
+            RecordParser.scan(RecordStore.getAll(filename), filter);
+            return;
+        }
+        File file = new File(DATA_DIR + filename);
+        if (file.length() >= MAPPED_THRESHOLD) {
+            try {
+                MappedRecordReader.scanMatching(file, column, values, visitor);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        } else {
+            scanFile(filename, filter);
+        }
+    }
+
+    private static void scanFile(String filename, RecordVisitor visitor) {
+        File file = new File(DATA_DIR + filename);
+        if (!file.exists()) return;
+        try {
+            if (file.length() >= MAPPED_THRESHOLD) {
+                MappedRecordReader.scan(file, visitor);
+                return;
+            }
+            try (Reader reader = new FileReader(file, StandardCharsets.UTF_8)) {
+                RecordParser.scan(reader, visitor);
             }
-            writer.close();
-            return updated;
         } catch (IOException e) {
             e.printStackTrace();
-            return false;
         }
     }
 
+    // Updates and deletes are appended to the file's journal instead of rewriting the file,
+    // so their cost does not depend on the file size. See Journal.
+    public static boolean updateLine(String filename, int idIndex, String idValue, String... newData) {
+        return writeJournal(filename, Journal.Mutation.update(new int[]{idIndex}, new String[]{idValue}, newData));
+    }
+
     public static boolean deleteLine(String filename, int idIndex, String idValue) {
-        String filepath = DATA_DIR + filename;
-        try {
-            List<String> lines = readFile(filename);
-            BufferedWriter writer = new BufferedWriter(new FileWriter(filepath));
-            boolean deleted = false;
-            for (String line : lines) {
-                String[] parts = line.split(" \\| ");
-                if (parts.length > idIndex && parts[idIndex].equals(idValue)) {
-                    deleted = true;
-                    continue;
+        return writeJournal(filename, Journal.Mutation.delete(new int[]{idIndex}, new String[]{idValue}));
+    }
+
+    // Inserts the record, or replaces every record whose key columns hold the same values as
+    // data does. The existing row is found through an index and the change is a single append
+    // to either the data file or its journal.
+    public static UpsertResult upsert(String filename, int[] keyColumns, String... data) {
+        String[] keyValues = new String[keyColumns.length];
+        for (int i = 0; i < keyColumns.length; i++) keyValues[i] = data[keyColumns[i]];
+        Journal.Mutation update = Journal.Mutation.update(keyColumns, keyValues, data);
+        synchronized (RecordStore.LOCK) {
+            // Another process must not change the rows between finding the match and writing
+            FileChannel lock = null;
+            try {
+                lock = Journal.lock(filename);
+                List<String[]> matches = RecordStore.matchingRows(filename, update);
+                if (matches.isEmpty()) {
+                    return appendLine(filename, data) ? UpsertResult.INSERTED : UpsertResult.FAILED;
                 }
-                writer.write(line);
-                writer.newLine();
+                return writeJournal(filename, update, matches) ? UpsertResult.UPDATED : UpsertResult.FAILED;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return UpsertResult.FAILED;
+            } finally {
+                Journal.unlock(filename, lock);
             }
-            writer.close();
-            return deleted;
+        }
+    }
+
+    private static boolean writeJournal(String filename, Journal.Mutation mutation) {
+        synchronized (RecordStore.LOCK) {
+            FileChannel lock = null;
+            try {
+                lock = Journal.lock(filename);
+                List<String[]> matches = RecordStore.matchingRows(filename, mutation);
+                if (matches.isEmpty()) return false;
+                return writeJournal(filename, mutation, matches);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            } finally {
+                Journal.unlock(filename, lock);
+            }
+        }
+    }
+
+    // Called holding the file's journal lock, so the cache is only marked current if no other
+    // process wrote since it was checked.
+    private static boolean writeJournal(String filename, Journal.Mutation mutation, List<String[]> matches) {
+        try {
+            boolean cached = RecordStore.isFresh(filename);
+            Journal.write(filename, mutation);
+            RecordStore.written(filename, mutation, cached, matches);
+            return true;
         } catch (IOException e) {
             e.printStackTrace();
+            RecordStore.untracked(filename);
             return false;
         }
     }
@@ -0,0 +1,215 @@
+package utils;
+
+import java.util.*;
+
+// Final module marks: every result is scaled by its assessment's max marks and weighted, and
+// the weighted percentages are summed per student and graded on the current scale.
+//
+// The weight is an optional fifth column of assessments.txt, in percent of the module. Any
+// assessments without one share whatever the given weights leave of 100 equally (all of them
+// equally if none has a weight). The weights are normalized, so they need not add up to 100.
+// A missing result counts as zero.
+//
+// A module is computed in one pass over its results (found through the results index) into
+// primitive arrays indexed by student. The outcome is cached per module and reused while the
+// module's assessments, their results (ResultAggregates.version) and grading.txt are unchanged.
+public class FinalGrades {
+    private static final String ASSESSMENTS_FILE = "assessments.txt";
+    private static final String RESULTS_FILE = "results.txt";
+    private static final String GRADING_FILE = "grading.txt";
+    private static final int MAX_ENTRIES = 32;
+
+    private static final Map<String, Entry> cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    // The final marks of every student with a result in one module.
+    public static final class ModuleGrades {
+        private final String moduleId;
+        private final String[] studentIds;
+        private final double[] percentages;
+        private final String[] grades;
+        private final Map<String, Integer> index;
+
+        private ModuleGrades(String moduleId, String[] studentIds, double[] percentages, String[] grades) {
+            this.moduleId = moduleId;
+            this.studentIds = studentIds;
+            this.percentages = percentages;
+            this.grades = grades;
+            this.index = new HashMap<>(studentIds.length * 2);
+            for (int i = 0; i < studentIds.length; i++) index.put(studentIds[i], i);
+        }
+
+        public String moduleId() {
+            return moduleId;
+        }
+
+        public int size() {
+            return studentIds.length;
+        }
+
+        public String studentId(int i) {
+            return studentIds[i];
+        }
+
+        public double percentage(int i) {
+            return percentages[i];
+        }
+
+        public String grade(int i) {
+            return grades[i];
+        }
+
+        // Position of the student, or -1 without any result in this module.
+        public int indexOf(String studentId) {
+            Integer i = index.get(studentId);
+            return i == null ? -1 : i;
+        }
+    }
+
+    private static class Entry {
+        final List<String[]> assessments;
+        final long version;
+        final ModuleGrades grades;
+
+        Entry(List<String[]> assessments, long version, ModuleGrades grades) {
+            this.assessments = assessments;
+            this.version = version;
+            this.grades = grades;
+        }
+
+        boolean matches(List<String[]> current, long currentVersion) {
+            if (version != currentVersion || assessments.size() != current.size()) return false;
+            for (int i = 0; i < current.size(); i++) {
+                if (!Arrays.equals(assessments.get(i), current.get(i))) return false;
+            }
+            return true;
+        }
+    }
+
+    private FinalGrades() {
+    }
+
+    public static ModuleGrades forModule(String moduleId) {
+        List<String[]> assessments = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        for (String[] assessment : FileHandler.findRecords(ASSESSMENTS_FILE, 1, moduleId)) {
+            if (assessment.length >= 4) {
+                assessments.add(assessment);
+                ids.add(assessment[0]);
+            }
+        }
+        long version = ResultAggregates.version(ids, null) + RecordStore.generation(GRADING_FILE);
+        synchronized (cache) {
+            Entry entry = cache.get(moduleId);
+            if (entry != null && entry.matches(assessments, version)) return entry.grades;
+        }
+        ModuleGrades grades = compute(moduleId, assessments);
+        synchronized (cache) {
+            cache.put(moduleId, new Entry(assessments, version, grades));
+        }
+        return grades;
+    }
+
+    // The weight of each assessment as a fraction of the module, per the rules above.
+    public static double[] weights(List<String[]> assessments) {
+        int n = assessments.size();
+        double[] weights = new double[n];
+        double given = 0;
+        int missing = 0;
+        for (int i = 0; i < n; i++) {
+            weights[i] = weight(assessments.get(i));
+            if (Double.isNaN(weights[i])) missing++; else given += weights[i];
+        }
+        double share = missing == 0 ? 0 : (given == 0 ? 1 : Math.max(0, 100 - given) / missing);
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            if (Double.isNaN(weights[i])) weights[i] = share;
+            total += weights[i];
+        }
+        for (int i = 0; i < n; i++) weights[i] = total > 0 ? weights[i] / total : 0;
+        return weights;
+    }
+
+    // Percentage points of the final mark per mark scored, per assessment.
+    static double[] scales(List<String[]> assessments) {
+        double[] weights = weights(assessments);
+        double[] scale = new double[weights.length];
+        for (int a = 0; a < scale.length; a++) {
+            try {
+                double max = Double.parseDouble(assessments.get(a)[3].trim());
+                scale[a] = max > 0 ? weights[a] * 100 / max : 0;
+            } catch (NumberFormatException e) {
+                scale[a] = 0;
+            }
+        }
+        return scale;
+    }
+
+    // The weight column of an assessments.txt row, or NaN if it has none.
+    private static double weight(String[] assessment) {
+        if (assessment.length < 5 || assessment[4].trim().isEmpty()) return Double.NaN;
+        try {
+            double weight = Double.parseDouble(assessment[4].trim());
+            return weight >= 0 ? weight : Double.NaN;
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static ModuleGrades compute(String moduleId, List<String[]> assessments) {
+        int n = assessments.size();
+        double[] scale = scales(assessments);
+
+        Map<String, Integer> students = new HashMap<>();
+        List<String> studentIds = new ArrayList<>();
+        double[] totals = new double[64];
+        // For results entered twice, the later row replaces the earlier one
+        int[] lastAssessment = new int[64];
+        double[] lastContribution = new double[64];
+        for (int a = 0; a < n; a++) {
+            for (String[] result : FileHandler.findRecords(RESULTS_FILE, 0, assessments.get(a)[0])) {
+                if (result.length < 3) continue;
+                double mark;
+                try {
+                    mark = Double.parseDouble(result[2]);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                Integer found = students.get(result[1]);
+                int s;
+                if (found == null) {
+                    s = studentIds.size();
+                    students.put(result[1], s);
+                    studentIds.add(result[1]);
+                    if (s == totals.length) {
+                        totals = Arrays.copyOf(totals, s * 2);
+                        lastContribution = Arrays.copyOf(lastContribution, s * 2);
+                        lastAssessment = Arrays.copyOf(lastAssessment, s * 2);
+                    }
+                    lastAssessment[s] = -1;
+                } else {
+                    s = found;
+                }
+                double contribution = mark * scale[a];
+                if (lastAssessment[s] == a) totals[s] -= lastContribution[s];
+                totals[s] += contribution;
+                lastAssessment[s] = a;
+                lastContribution[s] = contribution;
+            }
+        }
+
+        int count = studentIds.size();
+        double[] percentages = Arrays.copyOf(totals, count);
+        String[] grades = new String[count];
+        GradeScale gradeScale = GradeScale.current();
+        for (int s = 0; s < count; s++) {
+            String grade = gradeScale.grade(percentages[s]);
+            grades[s] = grade != null ? grade : "N/A";
+        }
+        return new ModuleGrades(moduleId, studentIds.toArray(new String[0]), percentages, grades);
+    }
+}
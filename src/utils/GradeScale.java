@@ -0,0 +1,172 @@
+package utils;
+
+import java.util.*;
+
+// Grade boundaries from grading.txt compiled into sorted arrays, so grading a mark is a
+// binary search instead of a walk over the file with parseDouble on every bound. The
+// compiled scale is immutable and shared; current() only recompiles after grading.txt
+// changed (its RecordStore generation moved on).
+//
+// Bands are sorted by their minimum. Where one band ends at an integer and the next starts
+// at the following integer (44 / 45), the band also covers the marks in between, so 44.5
+// gets the lower band's grade rather than none.
+//
+// A band may give its grade points for the GPA in a fourth column. Bands without one are
+// spread evenly from 0 (lowest band) to 4.0 (highest).
+public final class GradeScale {
+    private static final String GRADING_FILE = "grading.txt";
+
+    private static GradeScale current;
+    private static long currentGeneration = -1;
+
+    private final String[] grades;
+    private final double[] lower;
+    private final double[] upper;
+    private final double[] points;
+    private final List<String> problems;
+
+    private GradeScale(String[] grades, double[] lower, double[] upper, double[] points, List<String> problems) {
+        this.grades = grades;
+        this.lower = lower;
+        this.upper = upper;
+        this.points = points;
+        this.problems = Collections.unmodifiableList(problems);
+    }
+
+    // The scale compiled from the current contents of grading.txt.
+    public static synchronized GradeScale current() {
+        long generation = RecordStore.generation(GRADING_FILE);
+        if (current == null || generation != currentGeneration) {
+            current = compile(FileHandler.getAllRecords(GRADING_FILE));
+            currentGeneration = generation;
+        }
+        return current;
+    }
+
+    // Compiles grading rows (Grade | Min | Max [| Points]). Rows that cannot be used, and gaps or
+    // overlaps between bands, are listed in problems().
+    public static GradeScale compile(List<String[]> rows) {
+        List<String> problems = new ArrayList<>();
+        List<Object[]> bands = new ArrayList<>();
+        for (String[] row : rows) {
+            if (row.length < 3) {
+                problems.add("Incomplete grading row: " + String.join(" | ", row));
+                continue;
+            }
+            try {
+                double min = Double.parseDouble(row[1]);
+                double max = Double.parseDouble(row[2]);
+                if (min > max) {
+                    problems.add("Grade " + row[0] + " has minimum " + row[1] + " above maximum " + row[2]);
+                    continue;
+                }
+                double gradePoints = Double.NaN;
+                if (row.length >= 4 && !row[3].trim().isEmpty()) {
+                    try {
+                        gradePoints = Double.parseDouble(row[3].trim());
+                    } catch (NumberFormatException e) {
+                        problems.add("Grade " + row[0] + " has non-numeric grade points");
+                    }
+                }
+                bands.add(new Object[]{row[0], min, max, gradePoints});
+            } catch (NumberFormatException e) {
+                problems.add("Grade " + row[0] + " has a non-numeric boundary");
+            }
+        }
+        bands.sort(Comparator.comparingDouble(b -> (Double) b[1]));
+
+        int n = bands.size();
+        String[] grades = new String[n];
+        double[] lower = new double[n];
+        double[] upper = new double[n];
+        double[] points = new double[n];
+        for (int i = 0; i < n; i++) {
+            grades[i] = (String) bands.get(i)[0];
+            lower[i] = (Double) bands.get(i)[1];
+            upper[i] = (Double) bands.get(i)[2];
+            points[i] = (Double) bands.get(i)[3];
+            if (Double.isNaN(points[i])) points[i] = n == 1 ? 4.0 : 4.0 * i / (n - 1);
+        }
+        for (int i = 0; i + 1 < n; i++) {
+            if (lower[i + 1] <= upper[i]) {
+                problems.add("Grades " + grades[i] + " and " + grades[i + 1] + " overlap");
+                continue;
+            }
+            String end = format(upper[i]);
+            if (upper[i] == Math.floor(upper[i]) && lower[i + 1] == upper[i] + 1) {
+                upper[i] = Math.nextDown(lower[i + 1]);
+            }
+            // Whatever the closing above left between the bands, however narrow
+            if (lower[i + 1] > Math.nextUp(upper[i])) {
+                problems.add("No grade covers marks between " + end + " and " + format(lower[i + 1]));
+            }
+        }
+        return new GradeScale(grades, lower, upper, points, problems);
+    }
+
+    private static String format(double value) {
+        return value == Math.floor(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    // The grade for a mark, or null if no band covers it.
+    public String grade(double mark) {
+        int at = band(mark);
+        return at < 0 ? null : grades[at];
+    }
+
+    // The position of the band covering a mark, or -1 if none does. Bands are intervals, so
+    // two marks in the same band grade every mark between them the same.
+    int band(double mark) {
+        if (Double.isNaN(mark)) return -1;
+        int at = Arrays.binarySearch(lower, mark);
+        if (at < 0) at = -at - 2;
+        if (at < 0 || mark > upper[at]) return -1;
+        return at;
+    }
+
+    // Grades a mark as stored in results.txt; "N/A" if it is not a number or not covered.
+    public String grade(String marks) {
+        try {
+            String grade = grade(Double.parseDouble(marks));
+            return grade != null ? grade : "N/A";
+        } catch (NumberFormatException e) {
+            return "N/A";
+        }
+    }
+
+    // Grades a mark out of maxMarks by its percentage; without a usable maximum the mark is
+    // taken as a percentage already.
+    public String grade(String marks, String maxMarks) {
+        try {
+            double max = Double.parseDouble(maxMarks.trim());
+            if (max > 0) {
+                String grade = grade(Double.parseDouble(marks) * 100 / max);
+                return grade != null ? grade : "N/A";
+            }
+        } catch (NumberFormatException | NullPointerException e) {
+            // Fall back to the raw mark
+        }
+        return grade(marks);
+    }
+
+    // The grade of a band returned by band().
+    String gradeOf(int band) {
+        return grades[band];
+    }
+
+    // Grade points of a grade for the GPA, or NaN for a grade not on this scale.
+    public double points(String grade) {
+        for (int i = 0; i < grades.length; i++) {
+            if (grades[i].equals(grade)) return points[i];
+        }
+        return Double.NaN;
+    }
+
+    public List<String> problems() {
+        return problems;
+    }
+
+    public boolean isValid() {
+        return problems.isEmpty();
+    }
+}
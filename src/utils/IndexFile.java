@@ -0,0 +1,286 @@
+package utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Persisted secondary index: for one column of a data file, maps each value to the byte
+// offsets of the lines holding it. Stored in data/.index/<file>.<column>.idx as
+//   <value> | <offset>
+//   # <covered>        the base file offset up to which the entries above are complete
+// New lines appended to the base file are added incrementally; a file rewritten by journal
+// compaction has its indexes dropped and rebuilt on next use. The in-memory RecordStore
+// indexes are the primary path; these files let a per-user view read just its own lines
+// without loading the whole data file.
+class IndexFile {
+    private static final Map<String, int[]> DECLARED = new HashMap<>();
+
+    static {
+        DECLARED.put("results.txt", new int[]{0, 1});     // assessmentId, studentId
+        DECLARED.put("enrollments.txt", new int[]{0, 1}); // studentId, classId
+        DECLARED.put("comments.txt", new int[]{1});       // lecturerId
+        DECLARED.put("assessments.txt", new int[]{1});    // moduleId
+    }
+
+    private static final Map<String, IndexFile> open = new HashMap<>();
+
+    private final String filename;
+    private final int column;
+    private final Map<String, long[]> offsets = new HashMap<>();
+    private long covered;
+    private long fileLength;
+
+    private IndexFile(String filename, int column) {
+        this.filename = filename;
+        this.column = column;
+    }
+
+    static int[] declaredColumns(String filename) {
+        return DECLARED.getOrDefault(filename, new int[0]);
+    }
+
+    static boolean isDeclared(String filename, int column) {
+        for (int c : declaredColumns(filename)) {
+            if (c == column) return true;
+        }
+        return false;
+    }
+
+    private static File indexFile(String filename, int column) {
+        return FileHandler.dataFile(".index/" + filename + "." + column + ".idx");
+    }
+
+    // Reads the matching rows through the persisted index, or returns null if the index
+    // cannot be used and the caller should fall back to the full file.
+    static List<String[]> lookup(String filename, int column, String value) {
+        try {
+            IndexFile index = open(filename, column);
+            long[] found = index.offsets.get(value);
+            List<String[]> rows = new ArrayList<>();
+            if (found == null) return rows;
+            try (RandomAccessFile raf = new RandomAccessFile(FileHandler.dataFile(filename), "r")) {
+                for (int i = 1; i <= found[0]; i++) {
+                    String[] row = readLine(raf, found[i]);
+                    if (row == null || row.length <= column || !row[column].equals(value)) {
+                        // The base file changed underneath the index
+                        drop(filename);
+                        return null;
+                    }
+                    rows.add(row);
+                }
+            }
+            return rows;
+        } catch (IOException e) {
+            e.printStackTrace();
+            drop(filename);
+            return null;
+        }
+    }
+
+    private static IndexFile open(String filename, int column) throws IOException {
+        String key = filename + "#" + column;
+        IndexFile index = open.get(key);
+        File file = indexFile(filename, column);
+        if (index != null && file.length() != index.fileLength) {
+            open.remove(key);
+            index = null;
+        }
+        if (index == null) {
+            if (!file.exists()) build(filename);
+            index = new IndexFile(filename, column);
+            index.load();
+            open.put(key, index);
+        }
+        long baseLength = FileHandler.dataFile(filename).length();
+        if (baseLength < index.covered) {
+            drop(filename);
+            return open(filename, column);
+        }
+        if (baseLength > index.covered) index.catchUp(baseLength);
+        return index;
+    }
+
+    private void load() throws IOException {
+        List<String> pending = new ArrayList<>();
+        File file = indexFile(filename, column);
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("# ")) {
+                    for (String entry : pending) {
+                        int at = entry.lastIndexOf(" | ");
+                        add(entry.substring(0, at), Long.parseLong(entry.substring(at + 3)));
+                    }
+                    pending.clear();
+                    covered = Long.parseLong(line.substring(2));
+                } else if (!line.isEmpty()) {
+                    // Entries only count once the covered marker after them was written
+                    pending.add(line);
+                }
+            }
+        }
+        fileLength = file.length();
+    }
+
+    private void add(String value, long offset) {
+        long[] list = offsets.get(value);
+        if (list == null) {
+            list = new long[3];
+        } else if (list[0] + 1 == list.length) {
+            list = Arrays.copyOf(list, list.length * 2);
+        }
+        list[(int) ++list[0]] = offset;
+        offsets.put(value, list);
+    }
+
+    // Indexes lines that were appended to the base file by someone else since the last update.
+    private void catchUp(long baseLength) throws IOException {
+        List<String> entries = new ArrayList<>();
+        long end = scan(FileHandler.dataFile(filename), covered, baseLength, (offset, row) -> {
+            if (row.length > column) {
+                add(row[column], offset);
+                entries.add(row[column] + " | " + offset);
+            }
+        });
+        // Only a line still being written is left; it is picked up once it is complete
+        if (end == covered) return;
+        write(entries, end);
+    }
+
+    private void write(List<String> entries, long newCovered) throws IOException {
+        File file = indexFile(filename, column);
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file, StandardCharsets.UTF_8, true))) {
+            for (String entry : entries) {
+                writer.write(entry);
+                writer.newLine();
+            }
+            writer.write("# " + newCovered);
+            writer.newLine();
+        }
+        covered = newCovered;
+        fileLength = file.length();
+    }
+
+    // Called after FileHandler appended a row to the base file at the given offset.
+    static void appended(String filename, String[] row, long offset, long newLength) {
+        appended(filename, Collections.singletonList(row), new long[]{offset}, newLength);
+    }
+
+    // Called after rows were appended to the base file in one go (see Batch), each at its offset.
+    static void appended(String filename, List<String[]> rows, long[] offsets, long newLength) {
+        if (rows.isEmpty()) return;
+        for (int column : declaredColumns(filename)) {
+            IndexFile index = open.get(filename + "#" + column);
+            File file = indexFile(filename, column);
+            // Otherwise the next lookup catches up from the covered marker instead
+            if (index == null) continue;
+            if (index.covered != offsets[0] || file.length() != index.fileLength) continue;
+            List<String> entries = new ArrayList<>();
+            for (int i = 0; i < rows.size(); i++) {
+                String[] row = rows.get(i);
+                if (row.length <= column) continue;
+                index.add(row[column], offsets[i]);
+                entries.add(row[column] + " | " + offsets[i]);
+            }
+            try {
+                index.write(entries, newLength);
+            } catch (IOException e) {
+                e.printStackTrace();
+                drop(filename);
+            }
+        }
+    }
+
+    // Forgets the indexes of a file whose base was rewritten; they are rebuilt on next use.
+    static void drop(String filename) {
+        for (int column : declaredColumns(filename)) {
+            open.remove(filename + "#" + column);
+            indexFile(filename, column).delete();
+        }
+    }
+
+    // One pass over the base file writes the index files for all declared columns.
+    private static void build(String filename) throws IOException {
+        int[] columns = declaredColumns(filename);
+        File base = FileHandler.dataFile(filename);
+        long length = base.length();
+        long[] end = {0};
+        indexFile(filename, columns[0]).getParentFile().mkdirs();
+        BufferedWriter[] writers = new BufferedWriter[columns.length];
+        try {
+            for (int i = 0; i < columns.length; i++) {
+                writers[i] = new BufferedWriter(new FileWriter(indexFile(filename, columns[i]), StandardCharsets.UTF_8));
+            }
+            if (base.exists()) end[0] = scan(base, 0, length, (offset, row) -> {
+                for (int i = 0; i < columns.length; i++) {
+                    if (row.length > columns[i]) {
+                        writers[i].write(row[columns[i]] + " | " + offset);
+                        writers[i].newLine();
+                    }
+                }
+            });
+            for (BufferedWriter writer : writers) {
+                writer.write("# " + end[0]);
+                writer.newLine();
+            }
+        } finally {
+            for (BufferedWriter writer : writers) {
+                if (writer != null) writer.close();
+            }
+        }
+    }
+
+    private interface LineConsumer {
+        void accept(long offset, String[] row) throws IOException;
+    }
+
+    // Walks the complete lines of the file between two byte offsets, reporting where each
+    // starts. A line without its terminator before to may still be being written, so it is
+    // left out; returns the offset just after the last terminator, up to which the index is
+    // complete.
+    private static long scan(File file, long from, long to, LineConsumer consumer) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file), 64 * 1024)) {
+            in.skipNBytes(from);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long offset = from;
+            long lineStart = from;
+            int b;
+            while (offset < to && (b = in.read()) != -1) {
+                offset++;
+                if (b == '\n' || b == '\r') {
+                    emit(line, lineStart, consumer);
+                    lineStart = offset;
+                } else {
+                    line.write(b);
+                }
+            }
+            return lineStart;
+        }
+    }
+
+    private static void emit(ByteArrayOutputStream line, long lineStart, LineConsumer consumer) throws IOException {
+        if (line.size() == 0) return;
+        String text = line.toString(StandardCharsets.UTF_8);
+        line.reset();
+        if (!text.trim().isEmpty()) consumer.accept(lineStart, RecordParser.split(text));
+    }
+
+    private static String[] readLine(RandomAccessFile raf, long offset) throws IOException {
+        raf.seek(offset);
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        byte[] buf = new byte[256];
+        int n;
+        outer:
+        while ((n = raf.read(buf)) > 0) {
+            for (int i = 0; i < n; i++) {
+                if (buf[i] == '\n' || buf[i] == '\r') {
+                    line.write(buf, 0, i);
+                    break outer;
+                }
+            }
+            line.write(buf, 0, n);
+        }
+        if (line.size() == 0) return null;
+        return RecordParser.split(line.toString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,426 @@
+package utils;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Log-structured write path for the data files. Instead of rewriting a whole file to
+// change one record, updates and deletes are appended to "<file>.journal" next to it.
+// Readers replay the journal over the base file, and a background compaction folds the
+// journal back into the base file once it grows large enough.
+//
+// Journal format (same " | " delimiter as the data files):
+//   # <baseLength> <baseLastModified> <id>  header, ties the journal to one version of the base file
+//   A | field...                          append
+//   U | <cols> | <key>... | field...      update every row whose key columns match
+//   D | <cols> | <key>...                 delete every row whose key columns match
+// <cols> is a '+' separated list of column indexes, e.g. "0" or "0+1".
+public class Journal {
+    private static final long COMPACT_MIN_BYTES = 64 * 1024;
+
+    private static final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "journal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+    private static final Set<String> compactionQueued = new HashSet<>();
+    // The journal locks this process holds (see lock()), guarded by RecordStore.LOCK
+    private static final Map<String, FileChannel> locks = new HashMap<>();
+
+    private Journal() {
+    }
+
+    public static class Mutation {
+        final char op;
+        final int[] keyColumns;
+        final String[] keyValues;
+        final String[] data;
+
+        Mutation(char op, int[] keyColumns, String[] keyValues, String[] data) {
+            this.op = op;
+            this.keyColumns = keyColumns;
+            this.keyValues = keyValues;
+            // Keep the in-memory row identical to what a later re-read of the line would give
+            this.data = op == 'D' ? data : RecordParser.split(String.join(" | ", data));
+        }
+
+        static Mutation append(String[] data) {
+            return new Mutation('A', new int[0], new String[0], data);
+        }
+
+        static Mutation update(int[] keyColumns, String[] keyValues, String[] data) {
+            return new Mutation('U', keyColumns, keyValues, data);
+        }
+
+        static Mutation delete(int[] keyColumns, String[] keyValues) {
+            return new Mutation('D', keyColumns, keyValues, new String[0]);
+        }
+
+        boolean matches(String[] row) {
+            for (int i = 0; i < keyColumns.length; i++) {
+                int col = keyColumns[i];
+                if (row.length <= col || !row[col].equals(keyValues[i])) return false;
+            }
+            return true;
+        }
+
+        // Applies this mutation to an in-memory copy of the file and returns the number of rows touched.
+        int applyTo(List<String[]> rows) {
+            if (op == 'A') {
+                rows.add(data);
+                return 1;
+            }
+            int touched = 0;
+            for (ListIterator<String[]> it = rows.listIterator(); it.hasNext(); ) {
+                if (matches(it.next())) {
+                    if (op == 'U') it.set(data); else it.remove();
+                    touched++;
+                }
+            }
+            return touched;
+        }
+
+        String encode() {
+            StringBuilder sb = new StringBuilder().append(op);
+            if (op != 'A') {
+                sb.append(" | ");
+                for (int i = 0; i < keyColumns.length; i++) {
+                    if (i > 0) sb.append('+');
+                    sb.append(keyColumns[i]);
+                }
+                for (String key : keyValues) sb.append(" | ").append(key);
+            }
+            for (String field : data) sb.append(" | ").append(field);
+            return sb.toString();
+        }
+
+        static Mutation decode(String line) {
+            String[] parts = RecordParser.splitAll(line);
+            char op = parts[0].charAt(0);
+            if (op == 'A') {
+                return append(Arrays.copyOfRange(parts, 1, parts.length));
+            }
+            String[] cols = parts[1].split("\\+");
+            int[] keyColumns = new int[cols.length];
+            for (int i = 0; i < cols.length; i++) keyColumns[i] = Integer.parseInt(cols[i]);
+            String[] keyValues = Arrays.copyOfRange(parts, 2, 2 + cols.length);
+            String[] data = Arrays.copyOfRange(parts, 2 + cols.length, parts.length);
+            return new Mutation(op, keyColumns, keyValues, data);
+        }
+    }
+
+    static File journalFile(String filename) {
+        return FileHandler.dataFile(filename + ".journal");
+    }
+
+    private static File nextFile(String filename) {
+        return FileHandler.dataFile(filename + ".journal.next");
+    }
+
+    // Written by compact() just before it replaces the base file; holds the header of the
+    // journal being folded in, so that recover() can tell that journal from its successor.
+    private static File doneFile(String filename) {
+        return FileHandler.dataFile(filename + ".journal.done");
+    }
+
+    private static File lockFile(String filename) {
+        return FileHandler.dataFile(filename + ".lock");
+    }
+
+    // True while the file has journal entries that are not yet folded into the base file.
+    public static boolean hasPending(String filename) {
+        return journalFile(filename).length() > 0;
+    }
+
+    // Takes the lock that keeps other processes sharing data/ from writing the file or its
+    // journal, or compacting it, until unlock(). Callers hold RecordStore.LOCK, which keeps the
+    // threads of this process out; a lock this process already holds is not taken again, and
+    // null is returned for it.
+    static FileChannel lock(String filename) throws IOException {
+        if (locks.containsKey(filename)) return null;
+        FileChannel channel = FileChannel.open(lockFile(filename).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.lock();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        locks.put(filename, channel);
+        return channel;
+    }
+
+    static void unlock(String filename, FileChannel lock) {
+        if (lock == null) return;
+        locks.remove(filename);
+        try {
+            lock.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Appends one entry, starting a new journal for the current base file if needed.
+    static void write(String filename, Mutation mutation) throws IOException {
+        writeAll(filename, Collections.singletonList(mutation), false);
+    }
+
+    // Appends several entries with one open of the journal, optionally forcing them to disk.
+    static void writeAll(String filename, List<Mutation> mutations, boolean sync) throws IOException {
+        File journal = journalFile(filename);
+        FileChannel lock = lock(filename);
+        try {
+            // A journal a compaction already folded in must not be written to
+            recover(filename);
+            boolean fresh = journal.length() == 0;
+            try (FileOutputStream out = new FileOutputStream(journal, !fresh);
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                if (fresh) {
+                    writer.write(header(FileHandler.dataFile(filename)));
+                    writer.newLine();
+                }
+                for (Mutation mutation : mutations) {
+                    writer.write(mutation.encode());
+                    writer.newLine();
+                }
+                writer.flush();
+                if (sync) out.getFD().sync();
+            }
+        } finally {
+            unlock(filename, lock);
+        }
+        File base = FileHandler.dataFile(filename);
+        if (journal.length() > Math.max(COMPACT_MIN_BYTES, base.length() / 2)) {
+            scheduleCompaction(filename);
+        }
+    }
+
+    // Replays the journal over the rows read from the base file. Callers hold lock(filename).
+    static void replay(String filename, List<String[]> rows) {
+        File journal = journalFile(filename);
+        try {
+            recover(filename);
+            if (journal.length() == 0) return;
+            List<String> lines = Files.readAllLines(journal.toPath(), StandardCharsets.UTF_8);
+            if (lines.isEmpty()) return;
+            if (!describes(lines.get(0), FileHandler.dataFile(filename))) {
+                // The base file was touched, copied or restored since the journal was started.
+                // Only a finished compaction makes a journal obsolete (see recover()), so the
+                // entries still apply; folding them in ties the two files together again.
+                System.err.println("Journal of " + filename + " does not match the data file; replaying it anyway");
+                scheduleCompaction(filename);
+            }
+            for (int i = 1; i < lines.size(); i++) {
+                if (!lines.get(i).isEmpty()) Mutation.decode(lines.get(i)).applyTo(rows);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // The entries between two lengths of the journal, e.g. those another process appended since
+    // it was last read. Returns null if the range does not hold whole lines, or if reading from
+    // the start finds a journal written against another version of the base file.
+    static List<Mutation> readRange(String filename, long from, long to) throws IOException {
+        String text = readLines(journalFile(filename), from, to);
+        if (text == null) return null;
+        List<Mutation> mutations = new ArrayList<>();
+        String[] lines = text.split("\\R");
+        int first = 0;
+        if (from == 0) {
+            if (lines.length == 0 || !describes(lines[0], FileHandler.dataFile(filename))) return null;
+            first = 1;
+        }
+        for (int i = first; i < lines.length; i++) {
+            if (!lines[i].isEmpty()) mutations.add(Mutation.decode(lines[i]));
+        }
+        return mutations;
+    }
+
+    // The text between two offsets of a file, or null unless both fall on line boundaries.
+    static String readLines(File file, long from, long to) throws IOException {
+        if (to <= from) return null;
+        long start = from == 0 ? 0 : from - 1;
+        byte[] bytes = new byte[(int) (to - start)];
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(start);
+            raf.readFully(bytes);
+        }
+        if (bytes[bytes.length - 1] != '\n' || (from > 0 && bytes[0] != '\n')) return null;
+        int offset = from == 0 ? 0 : 1;
+        return new String(bytes, offset, bytes.length - offset, StandardCharsets.UTF_8);
+    }
+
+    // Finishes or undoes a compaction that stopped part way. Holding the lock, a marker means
+    // its process died between writing the marker and deleting it: if the new base file is still
+    // the .tmp file nothing was replaced and the journal holds every entry; otherwise the journal
+    // named by the marker, if still there, is already folded in and gives way to its successor.
+    static void recover(String filename) throws IOException {
+        File done = doneFile(filename);
+        File next = nextFile(filename);
+        FileChannel lock = lock(filename);
+        try {
+            if (done.exists()) {
+                File journal = journalFile(filename);
+                File tmp = FileHandler.dataFile(filename + ".tmp");
+                String folded = firstLine(done);
+                if (!tmp.exists() && folded != null && folded.equals(firstLine(journal))) {
+                    if (next.exists()) {
+                        Files.move(next.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    } else {
+                        journal.delete();
+                    }
+                    IndexFile.drop(filename);
+                }
+                done.delete();
+            }
+            // Only written while the lock is held, so one found now is left over
+            next.delete();
+        } finally {
+            unlock(filename, lock);
+        }
+    }
+
+    private static String firstLine(File file) throws IOException {
+        if (!file.exists()) return null;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            return reader.readLine();
+        }
+    }
+
+    private static void writeLine(File file, String line) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file);
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+            out.getFD().sync();
+        }
+    }
+
+    // Ties a journal to one version of the base file. The random part tells apart journals
+    // started against base files of the same length and time, e.g. before and after a compaction.
+    private static String header(File base) {
+        return "# " + base.length() + " " + base.lastModified() + " " + UUID.randomUUID();
+    }
+
+    // True if the header line was written for the base file as it is now.
+    private static boolean describes(String header, File base) {
+        String[] parts = header.split(" ");
+        return parts.length >= 3 && parts[0].equals("#")
+            && parts[1].equals(String.valueOf(base.length())) && parts[2].equals(String.valueOf(base.lastModified()));
+    }
+
+    static void scheduleCompaction(String filename) {
+        synchronized (compactionQueued) {
+            if (!compactionQueued.add(filename)) return;
+        }
+        compactor.submit(() -> {
+            synchronized (compactionQueued) {
+                compactionQueued.remove(filename);
+            }
+            compact(filename);
+        });
+    }
+
+    // Folds the journal into a new base file. Writers keep appending to the journal while
+    // the new base is written; those entries are carried over into the new journal. The
+    // snapshot and the switch-over hold lock(filename), so that no process can write in
+    // between. The switch-over writes the successor journal, then the marker naming the
+    // folded journal, replaces the base file, installs the successor and drops the marker;
+    // recover() completes or undoes these steps after a crash.
+    public static void compact(String filename) {
+        File base = FileHandler.dataFile(filename);
+        File journal = journalFile(filename);
+        File tmp = FileHandler.dataFile(filename + ".tmp");
+        File next = nextFile(filename);
+        File done = doneFile(filename);
+        boolean replaced = false;
+        try {
+            List<String[]> rows;
+            String folded;
+            long covered;
+            synchronized (RecordStore.LOCK) {
+                FileChannel lock = lock(filename);
+                try {
+                    recover(filename);
+                    if (!hasPending(filename)) return;
+                    rows = RecordStore.getAll(filename);
+                    folded = firstLine(journal);
+                    covered = journal.length();
+                } finally {
+                    unlock(filename, lock);
+                }
+            }
+
+            try (FileOutputStream out = new FileOutputStream(tmp);
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                for (String[] row : rows) {
+                    writer.write(String.join(" | ", row));
+                    writer.newLine();
+                }
+                writer.flush();
+                out.getFD().sync();
+            }
+
+            synchronized (RecordStore.LOCK) {
+                FileChannel lock = lock(filename);
+                try {
+                    List<String> tail = new ArrayList<>();
+                    try (RandomAccessFile raf = new RandomAccessFile(journal, "r")) {
+                        raf.seek(covered);
+                        byte[] rest = new byte[(int) (raf.length() - covered)];
+                        raf.readFully(rest);
+                        for (String line : new String(rest, StandardCharsets.UTF_8).split("\\R")) {
+                            if (!line.isEmpty()) tail.add(line);
+                        }
+                    }
+                    if (!tail.isEmpty()) {
+                        try (FileOutputStream out = new FileOutputStream(next);
+                             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+                            writer.write(header(tmp));
+                            writer.newLine();
+                            for (String line : tail) {
+                                writer.write(line);
+                                writer.newLine();
+                            }
+                            writer.flush();
+                            out.getFD().sync();
+                        }
+                    }
+                    if (!MappedRecordReader.awaitUnread(base)) {
+                        throw new IOException(base + " is being scanned; compaction postponed");
+                    }
+                    // The cached table holds the tail only if this process wrote all of it
+                    boolean current = RecordStore.isFresh(filename);
+                    writeLine(done, folded);
+                    Files.move(tmp.toPath(), base.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    replaced = true;
+                    if (tail.isEmpty()) {
+                        journal.delete();
+                    } else {
+                        Files.move(next.toPath(), journal.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    done.delete();
+                    IndexFile.drop(filename);
+                    if (current) RecordStore.restamp(filename); else RecordStore.untracked(filename);
+                } finally {
+                    unlock(filename, lock);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            if (!replaced) {
+                // The base file is untouched and the journal still holds every entry
+                done.delete();
+                next.delete();
+                tmp.delete();
+            }
+            // Otherwise the marker stays for recover() to finish the switch-over
+        }
+    }
+}
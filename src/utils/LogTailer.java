@@ -0,0 +1,141 @@
+package utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Follows the activity log for a view that shows it. The first poll() returns the entries
+// from the start of the range; later polls return only what was appended since, by reading
+// activity_log.txt from the byte offset already consumed. If the active file was rotated in
+// the meantime, the tailer catches up through the closed segments from the last timestamp
+// it saw. Only complete lines are consumed, so a line being written is picked up next time.
+public class LogTailer {
+    private static final String LOG_FILE = "activity_log.txt";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int CHUNK = 64 * 1024;
+
+    private final LocalDateTime from;
+    private final String fromText;
+    private String fileKey;
+    private long offset = -1;
+    // Newest timestamp returned so far, and how many entries carried it
+    private String lastTimestamp;
+    private int seenAtLast;
+    // Set while catching up after a rotation
+    private String resumeAt;
+    private int resumeSkip;
+
+    public LogTailer(LocalDateTime from) {
+        this.from = from;
+        this.fromText = from == null ? null : from.format(TIMESTAMP);
+    }
+
+    // Entries appended since the previous call, oldest first.
+    public List<String[]> poll() {
+        List<String[]> entries = new ArrayList<>();
+        poll(entries::add);
+        return entries;
+    }
+
+    // As above, handing the entries to sink one at a time instead of collecting them, so that
+    // a long range need not fit in memory.
+    public void poll(Consumer<String[]> entries) {
+        synchronized (ActivityLog.class) {
+            File active = FileHandler.dataFile(LOG_FILE);
+            String key = identity(active);
+            try {
+                if (offset < 0 || key == null || !key.equals(fileKey) || active.length() < offset) {
+                    catchUp(entries);
+                    fileKey = key;
+                    offset = 0;
+                }
+                if (key != null) offset = readFrom(active, offset, entries);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            resumeAt = null;
+        }
+    }
+
+    // First poll, or the active file was rotated: everything after the last entry seen that
+    // is now in a closed segment. Until the poll ends, entries already returned are skipped.
+    private void catchUp(Consumer<String[]> entries) {
+        resumeAt = lastTimestamp;
+        resumeSkip = seenAtLast;
+        ActivityLog.readClosed(lastTimestamp != null ? LocalDateTime.parse(lastTimestamp, TIMESTAMP) : from, record -> {
+            add(entries, record.toArray());
+            return true;
+        });
+    }
+
+    // Reads in bounded chunks; a line split between two chunks is carried over in line.
+    private long readFrom(File file, long start, Consumer<String[]> entries) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            long end = raf.length();
+            if (end <= start) return start;
+            raf.seek(start);
+            byte[] bytes = new byte[(int) Math.min(end - start, CHUNK)];
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            long position = start;
+            long consumed = start;
+            while (position < end) {
+                int read = raf.read(bytes, 0, (int) Math.min(bytes.length, end - position));
+                if (read < 0) break;
+                for (int i = 0; i < read; i++) {
+                    byte b = bytes[i];
+                    if (b != '\n' && b != '\r') {
+                        line.write(b);
+                        continue;
+                    }
+                    if (line.size() > 0) {
+                        String text = line.toString(StandardCharsets.UTF_8);
+                        line.reset();
+                        if (!text.trim().isEmpty()) add(entries, RecordParser.split(text));
+                    }
+                    consumed = position + i + 1;
+                }
+                position += read;
+            }
+            return consumed;
+        }
+    }
+
+    private void add(Consumer<String[]> entries, String[] entry) {
+        if (entry.length == 0) return;
+        if (fromText != null && entry[0].compareTo(fromText) < 0) return;
+        if (resumeAt != null) {
+            int order = entry[0].compareTo(resumeAt);
+            if (order < 0) return;
+            if (order == 0 && resumeSkip > 0) {
+                resumeSkip--;
+                return;
+            }
+        }
+        if (entry[0].equals(lastTimestamp)) {
+            seenAtLast++;
+        } else if (lastTimestamp == null || entry[0].compareTo(lastTimestamp) > 0) {
+            lastTimestamp = entry[0];
+            seenAtLast = 1;
+        }
+        entries.accept(entry);
+    }
+
+    // The inode plus the first line: a rotated file's inode can be reused by the next active file.
+    private static String identity(File file) {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return attributes.fileKey() + "\n" + raf.readLine();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
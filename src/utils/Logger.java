@@ -1,11 +1,221 @@
 package utils;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+// Asynchronous activity log. log() only timestamps the entry and puts it on a bounded
+// queue, so callers on the EDT never touch the disk. A single background thread keeps
+// activity_log.txt open and writes whatever has queued up as one group commit, rotating
+// the file into closed segments first when needed (see ActivityLog). Log writes are ordered
+// by the logger's own lock; RecordStore.LOCK is only taken briefly before and after the
+// write, so reads and writes of other files never wait for a log fsync. Entries that cannot
+// be written are reported on stderr and counted in lost().
 public class Logger {
+    private static final String LOG_FILE = "activity_log.txt";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int MAX_GROUP = 512;
+
+    // What log() does when the queue is full
+    public enum Overflow {
+        BLOCK,         // wait for the writer to make room
+        DROP,          // discard the entry and count it in dropped()
+        WRITE_THROUGH  // write the entry synchronously on the calling thread
+    }
+
+    private static volatile int capacity = 4096;
+    private static volatile Overflow overflow = Overflow.BLOCK;
+    private static volatile boolean flushOnExit = true;
+
+    private static final ConcurrentLinkedQueue<String[]> queue = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger queued = new AtomicInteger();
+    private static final AtomicLong dropped = new AtomicLong();
+    private static final AtomicLong lost = new AtomicLong();
+    private static final Object WRITE_LOCK = new Object();
+    private static final Object FLUSHED = new Object();
+    private static FileChannel channel;
+
+    private static final Thread writer = new Thread(Logger::run, "activity-logger");
+
+    static {
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            if (flushOnExit) drain();
+        }, "activity-logger-flush"));
+    }
+
+    // Sets the queue size, the overflow policy, and whether queued entries are written when the JVM exits.
+    public static void configure(int queueCapacity, Overflow overflowPolicy, boolean flushQueueOnExit) {
+        capacity = queueCapacity;
+        overflow = overflowPolicy;
+        flushOnExit = flushQueueOnExit;
+    }
+
     public static void log(String userId, String action) {
-        String timeStamp = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
-        FileHandler.appendLine("activity_log.txt", timeStamp, userId, action);
+        String[] entry = {LocalDateTime.now().format(TIMESTAMP), userId, action};
+        while (true) {
+            int size = queued.get();
+            if (size < capacity) {
+                if (!queued.compareAndSet(size, size + 1)) continue;
+                queue.offer(entry);
+                if (size == 0) LockSupport.unpark(writer);
+                return;
+            }
+            switch (overflow) {
+                case DROP:
+                    dropped.incrementAndGet();
+                    return;
+                case WRITE_THROUGH:
+                    synchronized (WRITE_LOCK) {
+                        write(Collections.singletonList(entry));
+                    }
+                    return;
+                default:
+                    LockSupport.unpark(writer);
+                    LockSupport.parkNanos(100_000);
+            }
+        }
+    }
+
+    // Blocks until every entry logged so far is on disk.
+    public static void flush() {
+        synchronized (FLUSHED) {
+            while (queued.get() > 0) {
+                LockSupport.unpark(writer);
+                try {
+                    FLUSHED.wait(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    // Number of entries discarded under the DROP policy.
+    public static long dropped() {
+        return dropped.get();
+    }
+
+    // Number of entries that could not be written because of an I/O error.
+    public static long lost() {
+        return lost.get();
+    }
+
+    private static void run() {
+        while (true) {
+            if (queue.isEmpty()) {
+                LockSupport.park();
+                continue;
+            }
+            drain();
+        }
+    }
+
+    private static void drain() {
+        synchronized (WRITE_LOCK) {
+            List<String[]> group = new ArrayList<>();
+            String[] entry;
+            while ((entry = queue.poll()) != null) {
+                group.add(entry);
+                if (group.size() == MAX_GROUP) {
+                    write(group);
+                    queued.addAndGet(-group.size());
+                    group.clear();
+                }
+            }
+            if (!group.isEmpty()) {
+                write(group);
+                queued.addAndGet(-group.size());
+            }
+        }
+        synchronized (FLUSHED) {
+            FLUSHED.notifyAll();
+        }
+    }
+
+    // Called holding WRITE_LOCK.
+    private static void write(List<String[]> group) {
+        List<Journal.Mutation> mutations = new ArrayList<>(group.size());
+        StringBuilder text = new StringBuilder();
+        for (String[] entry : group) {
+            mutations.add(Journal.Mutation.append(entry));
+            text.append(String.join(" | ", entry)).append(System.lineSeparator());
+        }
+        ActivityLog.rotateIfNeeded(group.get(0)[0]);
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        FileChannel lock = null;
+        try {
+            boolean cached;
+            long before;
+            synchronized (RecordStore.LOCK) {
+                // Keeps other processes from compacting the log while it is written
+                lock = Journal.lock(LOG_FILE);
+                if (Journal.hasPending(LOG_FILE)) {
+                    cached = RecordStore.isFresh(LOG_FILE);
+                    Journal.writeAll(LOG_FILE, mutations, false);
+                    for (Journal.Mutation mutation : mutations) RecordStore.written(LOG_FILE, mutation, cached, null);
+                    return;
+                }
+                cached = RecordStore.isFresh(LOG_FILE);
+                before = FileHandler.dataFile(LOG_FILE).length();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            FileChannel out = channel();
+            while (buffer.hasRemaining()) out.write(buffer);
+            out.force(false);
+            synchronized (RecordStore.LOCK) {
+                boolean followed = cached && RecordStore.isFreshAt(LOG_FILE, before, bytes.length);
+                for (Journal.Mutation mutation : mutations) RecordStore.written(LOG_FILE, mutation, followed, null);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeChannel();
+            lost.addAndGet(group.size());
+            System.err.println("Activity log: " + group.size() + " entries could not be written and were lost");
+            synchronized (RecordStore.LOCK) {
+                RecordStore.untracked(LOG_FILE);
+            }
+        } finally {
+            if (lock != null) {
+                synchronized (RecordStore.LOCK) {
+                    Journal.unlock(LOG_FILE, lock);
+                }
+            }
+        }
+    }
+
+    // The open channel, reopened if the file was replaced or truncated behind it.
+    private static FileChannel channel() throws IOException {
+        File file = FileHandler.dataFile(LOG_FILE);
+        if (channel != null && (!file.exists() || channel.size() != file.length())) closeChannel();
+        if (channel == null) {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private static void closeChannel() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
     }
-}
\ No newline at end of file
+}
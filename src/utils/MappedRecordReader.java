@@ -0,0 +1,291 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+// Reads large data files through FileChannel.map instead of copying them onto the heap.
+// Lines and the " | " delimiter are found directly in the UTF-8 bytes (both are ASCII,
+// so they never occur inside a multi-byte character), and only lines that pass the byte
+// level filter are decoded into the reused RecordView. Large sets of values to match are
+// hashed, so that filtering costs the same per line however many values there are.
+// Each window is unmapped as soon as its lines are visited: on Windows a file cannot be
+// replaced or truncated while any part of it is mapped, so code that does either first waits
+// for the scans reading it to finish (see awaitUnread).
+class MappedRecordReader {
+    private static final long WINDOW = 64L * 1024 * 1024;
+    // More values than this are looked up in a hash table of their bytes instead of one by one
+    static final int LINEAR_VALUES = 4;
+    private static final long UNREAD_WAIT_MS = 2000;
+
+    // Files being scanned, with the number of scans of each; guarded by itself
+    private static final Map<Path, Integer> reading = new HashMap<>();
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> type = Class.forName("sun.misc.Unsafe");
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // Not available; mappings are released when their buffers are collected
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final RecordView view = new RecordView();
+    private char[] chars = new char[1024];
+
+    private final int column;
+    private final byte[][] values;
+    // Open addressing over the encoded values, null when there are few of them
+    private final byte[][] table;
+
+    private MappedRecordReader(int column, byte[][] values) {
+        this.column = column;
+        this.values = values;
+        if (values == null || values.length <= LINEAR_VALUES) {
+            table = null;
+            return;
+        }
+        table = new byte[Integer.highestOneBit(values.length * 2) * 2][];
+        for (byte[] value : values) {
+            int mask = table.length - 1;
+            int slot = hash(value) & mask;
+            while (table[slot] != null && !Arrays.equals(table[slot], value)) slot = (slot + 1) & mask;
+            table[slot] = value;
+        }
+    }
+
+    static void scan(File file, RecordVisitor visitor) throws IOException {
+        new MappedRecordReader(-1, null).run(file, 0, Long.MAX_VALUE, visitor);
+    }
+
+    // Visits the lines that start in [from, to). A line that straddles from belongs to the
+    // range before it, so adjacent ranges together visit every line exactly once.
+    static void scanRange(File file, long from, long to, RecordVisitor visitor) throws IOException {
+        new MappedRecordReader(-1, null).run(file, from, to, visitor);
+    }
+
+    // Visits only lines whose field at the given column equals one of the values.
+    static void scanMatching(File file, int column, Collection<String> values, RecordVisitor visitor) throws IOException {
+        byte[][] encoded = new byte[values.size()][];
+        int i = 0;
+        for (String value : values) encoded[i++] = value.getBytes(StandardCharsets.UTF_8);
+        new MappedRecordReader(column, encoded).run(file, 0, Long.MAX_VALUE, visitor);
+    }
+
+    // Waits a moment for the scans of the file to finish, so that it can be replaced or
+    // truncated. Returns false if some are still running.
+    static boolean awaitUnread(File file) {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        long deadline = System.currentTimeMillis() + UNREAD_WAIT_MS;
+        synchronized (reading) {
+            while (reading.containsKey(path)) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) return false;
+                try {
+                    reading.wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private void run(File file, long from, long to, RecordVisitor visitor) throws IOException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+        synchronized (reading) {
+            reading.merge(path, 1, Integer::sum);
+        }
+        try {
+            runWindows(file, from, to, visitor);
+        } finally {
+            synchronized (reading) {
+                if (reading.merge(path, -1, Integer::sum) == 0) reading.remove(path);
+                reading.notifyAll();
+            }
+        }
+    }
+
+    private void runWindows(File file, long from, long to, RecordVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = from;
+            long window = WINDOW;
+            // Starting mid-line: the first (partial) line is left to the previous range
+            boolean skipFirst = from > 0 && from < size && !endsLine(channel, from - 1);
+            while (position < size) {
+                long length = Math.min(window, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+                int lineStart = 0;
+                int limit = (int) length;
+                try {
+                    for (int i = 0; i < limit; i++) {
+                        byte b = buffer.get(i);
+                        if (b == '\n' || b == '\r') {
+                            if (position + lineStart >= to) return;
+                            if (skipFirst) {
+                                skipFirst = false;
+                            } else if (!visitLine(buffer, lineStart, i, visitor)) {
+                                return;
+                            }
+                            lineStart = i + 1;
+                        }
+                    }
+                    if (last) {
+                        if (!skipFirst && position + lineStart < to) visitLine(buffer, lineStart, limit, visitor);
+                        return;
+                    }
+                } finally {
+                    // Visitors only ever see copies of the bytes in view
+                    unmap(buffer);
+                }
+                if (lineStart == 0) {
+                    // A single line longer than the window; map a bigger region
+                    window *= 2;
+                    continue;
+                }
+                position += lineStart;
+                window = WINDOW;
+            }
+        }
+    }
+
+    private static void unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) return;
+        try {
+            INVOKE_CLEANER.invoke(UNSAFE, buffer);
+        } catch (ReflectiveOperationException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static boolean endsLine(FileChannel channel, long at) throws IOException {
+        ByteBuffer one = ByteBuffer.allocate(1);
+        channel.read(one, at);
+        byte b = one.get(0);
+        return b == '\n' || b == '\r';
+    }
+
+    private boolean visitLine(ByteBuffer buffer, int from, int to, RecordVisitor visitor) {
+        if (to == from) return true;
+        if (values != null && !columnMatches(buffer, from, to)) return true;
+
+        int length = decode(buffer, from, to);
+        boolean blank = true;
+        for (int i = 0; i < length && blank; i++) {
+            if (!Character.isWhitespace(chars[i])) blank = false;
+        }
+        if (blank) return true;
+        view.reset(chars, 0, length);
+        if (values != null && view.fieldCount() <= column) return true;
+        return visitor.visit(view);
+    }
+
+    private boolean columnMatches(ByteBuffer buffer, int from, int to) {
+        int fieldStart = from;
+        int field = 0;
+        int i = from;
+        int end = to;
+        while (i <= to - 3) {
+            if (buffer.get(i) == ' ' && buffer.get(i + 1) == '|' && buffer.get(i + 2) == ' ') {
+                if (field == column) {
+                    end = i;
+                    break;
+                }
+                field++;
+                i += 3;
+                fieldStart = i;
+            } else {
+                i++;
+            }
+        }
+        if (field != column) return false;
+        if (table != null) return contains(buffer, fieldStart, end);
+        for (byte[] value : values) {
+            if (value.length != end - fieldStart) continue;
+            boolean same = true;
+            for (int k = 0; k < value.length && same; k++) {
+                if (buffer.get(fieldStart + k) != value[k]) same = false;
+            }
+            if (same) return true;
+        }
+        return false;
+    }
+
+    private boolean contains(ByteBuffer buffer, int from, int to) {
+        int h = 0;
+        for (int i = from; i < to; i++) h = 31 * h + buffer.get(i);
+        int mask = table.length - 1;
+        for (int slot = spread(h) & mask; table[slot] != null; slot = (slot + 1) & mask) {
+            byte[] value = table[slot];
+            if (value.length != to - from) continue;
+            boolean same = true;
+            for (int k = 0; k < value.length && same; k++) {
+                if (buffer.get(from + k) != value[k]) same = false;
+            }
+            if (same) return true;
+        }
+        return false;
+    }
+
+    private static int hash(byte[] bytes) {
+        int h = 0;
+        for (byte b : bytes) h = 31 * h + b;
+        return spread(h);
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    private int decode(ByteBuffer buffer, int from, int to) {
+        int length = to - from;
+        if (chars.length < length) chars = new char[Math.max(length, chars.length * 2)];
+        boolean ascii = true;
+        for (int i = 0; i < length; i++) {
+            byte b = buffer.get(from + i);
+            if (b < 0) {
+                ascii = false;
+                break;
+            }
+            chars[i] = (char) b;
+        }
+        if (ascii) return length;
+
+        ByteBuffer in = buffer.duplicate();
+        in.limit(to).position(from);
+        CharBuffer out = CharBuffer.wrap(chars);
+        decoder.reset();
+        decoder.decode(in, out, true);
+        decoder.flush(out);
+        return out.position();
+    }
+}
@@ -0,0 +1,260 @@
+package utils;
+
+import java.util.Arrays;
+
+// Single-pass statistics over marks: count, mean and variance (Welford), min, max and pass/fail,
+// plus a fixed-bin sketch that gives a histogram and approximate quantiles. Everything is kept
+// in primitives, two accumulators over the same range can be merged, and a mark can be removed
+// again, so running totals can be maintained as results change.
+//
+// The sketch splits [low, high] into equal bins; marks outside the range count in the first or
+// last bin. Quantiles are interpolated within a bin, so they are accurate to one bin width
+// (0.5 marks with the defaults).
+public class MarkStatistics {
+    public static final double DEFAULT_PASS_MARK = 50;
+
+    private final double low;
+    private final double high;
+    private final double passMark;
+    private final long[] bins;
+
+    private long count;
+    private double mean;
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private long passed;
+
+    public MarkStatistics() {
+        this(0, 100, 200, DEFAULT_PASS_MARK);
+    }
+
+    public MarkStatistics(double low, double high, int binCount, double passMark) {
+        this.low = low;
+        this.high = high;
+        this.passMark = passMark;
+        this.bins = new long[binCount];
+    }
+
+    public void add(double mark) {
+        count++;
+        double delta = mark - mean;
+        mean += delta / count;
+        m2 += delta * (mark - mean);
+        if (mark < min) min = mark;
+        if (mark > max) max = mark;
+        if (mark >= passMark) passed++;
+        bins[bin(mark)]++;
+    }
+
+    // Parses and adds a mark as stored in results.txt; returns false if it is not a number.
+    public boolean add(String mark) {
+        try {
+            add(Double.parseDouble(mark));
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // Takes back a mark that was added earlier. Min and max fall back to the bin bounds of the
+    // remaining marks if the removed mark was one of them.
+    public void remove(double mark) {
+        if (count == 0) return;
+        if (count == 1) {
+            clear();
+            return;
+        }
+        double delta = mark - mean;
+        mean -= delta / (count - 1);
+        m2 -= delta * (mark - mean);
+        if (m2 < 0) m2 = 0;
+        count--;
+        if (mark >= passMark) passed--;
+        int bin = bin(mark);
+        if (bins[bin] > 0) bins[bin]--;
+        if (mark <= min) min = Math.max(binLow(firstBin()), low);
+        if (mark >= max) max = Math.min(binLow(lastBin() + 1), high);
+    }
+
+    // Combines another accumulator (over the same range and bins) into this one.
+    public void merge(MarkStatistics other) {
+        if (other.bins.length != bins.length || other.low != low || other.high != high) {
+            throw new IllegalArgumentException("Cannot merge statistics with different bins");
+        }
+        if (other.count == 0) return;
+        if (count == 0) {
+            mean = other.mean;
+            m2 = other.m2;
+        } else {
+            long total = count + other.count;
+            double delta = other.mean - mean;
+            mean += delta * other.count / total;
+            m2 += other.m2 + delta * delta * count * other.count / total;
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        passed += other.passed;
+        for (int i = 0; i < bins.length; i++) bins[i] += other.bins[i];
+    }
+
+    public void clear() {
+        count = 0;
+        mean = 0;
+        m2 = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+        passed = 0;
+        Arrays.fill(bins, 0);
+    }
+
+    private int bin(double mark) {
+        int bin = (int) ((mark - low) / (high - low) * bins.length);
+        return Math.max(0, Math.min(bins.length - 1, bin));
+    }
+
+    private double binLow(int bin) {
+        return low + (high - low) * bin / bins.length;
+    }
+
+    private int firstBin() {
+        for (int i = 0; i < bins.length; i++) if (bins[i] > 0) return i;
+        return 0;
+    }
+
+    private int lastBin() {
+        for (int i = bins.length - 1; i >= 0; i--) if (bins[i] > 0) return i;
+        return bins.length - 1;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public double mean() {
+        return count == 0 ? 0 : mean;
+    }
+
+    // Population variance: the marks are the whole cohort, not a sample of it.
+    public double variance() {
+        return count == 0 ? 0 : m2 / count;
+    }
+
+    public double stddev() {
+        return Math.sqrt(variance());
+    }
+
+    public double min() {
+        return count == 0 ? 0 : min;
+    }
+
+    public double max() {
+        return count == 0 ? 0 : max;
+    }
+
+    public double passMark() {
+        return passMark;
+    }
+
+    public long passCount() {
+        return passed;
+    }
+
+    public long failCount() {
+        return count - passed;
+    }
+
+    // Approximate q-quantile (0 <= q <= 1), e.g. 0.5 for the median.
+    public double quantile(double q) {
+        if (count == 0) return 0;
+        double rank = q * count;
+        long seen = 0;
+        for (int i = 0; i < bins.length; i++) {
+            if (bins[i] == 0) continue;
+            if (seen + bins[i] >= rank) {
+                double within = (rank - seen) / bins[i];
+                double value = binLow(i) + within * (high - low) / bins.length;
+                return Math.max(min, Math.min(max, value));
+            }
+            seen += bins[i];
+        }
+        return max;
+    }
+
+    public double median() {
+        return quantile(0.5);
+    }
+
+    // Counts per equal-width bucket over the sketch range. The sketch bins are merged, so
+    // buckets should divide the bin count evenly (10 buckets of 10 marks with the defaults).
+    public long[] histogram(int buckets) {
+        long[] histogram = new long[buckets];
+        for (int i = 0; i < bins.length; i++) {
+            histogram[(int) ((long) i * buckets / bins.length)] += bins[i];
+        }
+        return histogram;
+    }
+
+    public int binCount() {
+        return bins.length;
+    }
+
+    // Lower edge of a sketch bin, and the number of marks in it. With the default 0.5 wide
+    // bins every whole mark sits at the lower edge of its own bin.
+    public double binStart(int bin) {
+        return binLow(bin);
+    }
+
+    public long binTotal(int bin) {
+        return bins[bin];
+    }
+
+    public double sum() {
+        return mean() * count;
+    }
+
+    public double sumOfSquares() {
+        return m2 + count * mean() * mean();
+    }
+
+    // count | mean | m2 | min | max | passed | bin:count,... (only non-empty bins)
+    String encode() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(count).append(" | ").append(mean).append(" | ").append(m2).append(" | ")
+          .append(min).append(" | ").append(max).append(" | ").append(passed).append(" | ");
+        boolean first = true;
+        for (int i = 0; i < bins.length; i++) {
+            if (bins[i] == 0) continue;
+            if (!first) sb.append(',');
+            sb.append(i).append(':').append(bins[i]);
+            first = false;
+        }
+        return sb.toString();
+    }
+
+    // Restores the fields written by encode into this (empty, default-binned) accumulator.
+    void decode(String[] fields, int from) {
+        count = Long.parseLong(fields[from]);
+        mean = Double.parseDouble(fields[from + 1]);
+        m2 = Double.parseDouble(fields[from + 2]);
+        min = Double.parseDouble(fields[from + 3]);
+        max = Double.parseDouble(fields[from + 4]);
+        passed = Long.parseLong(fields[from + 5]);
+        Arrays.fill(bins, 0);
+        if (fields.length > from + 6 && !fields[from + 6].isEmpty()) {
+            for (String bin : fields[from + 6].split(",")) {
+                int at = bin.indexOf(':');
+                bins[Integer.parseInt(bin.substring(0, at))] = Long.parseLong(bin.substring(at + 1));
+            }
+        }
+    }
+
+    public double low() {
+        return low;
+    }
+
+    public double high() {
+        return high;
+    }
+}
@@ -0,0 +1,103 @@
+package utils;
+
+import java.io.*;
+import java.util.Arrays;
+
+// Hand-written scanner for the " | " delimited data files. Replaces line.split(" \\| "),
+// which goes through the regex engine and allocates for every line.
+public class RecordParser {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private RecordParser() {
+    }
+
+    // Same result as line.split(" \\| ").
+    public static String[] split(String line) {
+        RecordView view = new RecordView();
+        char[] chars = line.toCharArray();
+        view.reset(chars, 0, chars.length);
+        return view.toArray();
+    }
+
+    // Same as split() but keeps trailing empty fields, like line.split(" \\| ", -1).
+    static String[] splitAll(String line) {
+        String[] fields = new String[8];
+        int count = 0;
+        int fieldStart = 0;
+        int i = 0;
+        while (i <= line.length() - 3) {
+            if (line.charAt(i) == ' ' && line.charAt(i + 1) == '|' && line.charAt(i + 2) == ' ') {
+                if (count == fields.length) fields = Arrays.copyOf(fields, count * 2);
+                fields[count++] = line.substring(fieldStart, i);
+                i += 3;
+                fieldStart = i;
+            } else {
+                i++;
+            }
+        }
+        if (count == fields.length) fields = Arrays.copyOf(fields, count + 1);
+        fields[count++] = line.substring(fieldStart);
+        return Arrays.copyOf(fields, count);
+    }
+
+    // Streams every non-blank line of the reader through the visitor using one reused buffer.
+    static void scan(Reader reader, RecordVisitor visitor) throws IOException {
+        char[] buf = new char[BUFFER_SIZE];
+        RecordView view = new RecordView();
+        int filled = 0;
+        while (true) {
+            int read = reader.read(buf, filled, buf.length - filled);
+            boolean eof = read < 0;
+            if (!eof) filled += read;
+
+            int lineStart = 0;
+            for (int i = 0; i < filled; i++) {
+                char c = buf[i];
+                if (c == '\n' || c == '\r') {
+                    if (!visitLine(view, buf, lineStart, i, visitor)) return;
+                    lineStart = i + 1;
+                }
+            }
+            if (eof) {
+                visitLine(view, buf, lineStart, filled, visitor);
+                return;
+            }
+            // Keep the unfinished line at the front of the buffer, growing it for very long lines
+            int rest = filled - lineStart;
+            if (lineStart == 0 && rest == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            } else {
+                System.arraycopy(buf, lineStart, buf, 0, rest);
+            }
+            filled = rest;
+        }
+    }
+
+    private static boolean visitLine(RecordView view, char[] buf, int from, int to, RecordVisitor visitor) {
+        boolean blank = true;
+        for (int i = from; i < to && blank; i++) {
+            if (!Character.isWhitespace(buf[i])) blank = false;
+        }
+        if (blank) return true;
+        view.reset(buf, from, to);
+        return visitor.visit(view);
+    }
+
+    // Feeds already parsed rows through the same visitor interface.
+    static void scan(Iterable<String[]> rows, RecordVisitor visitor) {
+        RecordView view = new RecordView();
+        StringBuilder line = new StringBuilder();
+        char[] buf = new char[256];
+        for (String[] row : rows) {
+            line.setLength(0);
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) line.append(" | ");
+                line.append(row[i]);
+            }
+            if (buf.length < line.length()) buf = new char[line.length() * 2];
+            line.getChars(0, line.length(), buf, 0);
+            view.reset(buf, 0, line.length());
+            if (!visitor.visit(view)) return;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// An append-only list of records kept in a temporary file instead of on the heap, for views
+// over more rows than should be held in memory (a year of the activity log). Only the byte
+// offset of every record is kept in memory; records are read back a page at a time and the
+// most recently used pages are cached. Appends are buffered and written in blocks.
+public class RecordSpool implements Closeable {
+    private static final int PAGE_ROWS = 256;
+    private static final int MAX_PAGES = 16;
+    private static final int WRITE_BUFFER = 64 * 1024;
+
+    private final File path;
+    private final RandomAccessFile file;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private long[] offsets = new long[1024];
+    private int size;
+    private long written;   // bytes in the file; pending follows them
+    private final Map<Integer, String[][]> pages = new LinkedHashMap<Integer, String[][]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, String[][]> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    public RecordSpool() throws IOException {
+        path = File.createTempFile("spool", ".txt");
+        path.deleteOnExit();
+        file = new RandomAccessFile(path, "rw");
+    }
+
+    public synchronized void append(String[] record) throws IOException {
+        if (size == offsets.length) offsets = Arrays.copyOf(offsets, size * 2);
+        offsets[size] = written + pending.size();
+        byte[] line = (String.join(" | ", record) + "\n").getBytes(StandardCharsets.UTF_8);
+        pending.write(line, 0, line.length);
+        // The last page may be cached while still filling up
+        pages.remove(size / PAGE_ROWS);
+        size++;
+        if (pending.size() >= WRITE_BUFFER) flush();
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // The record at the position, counted in the order of appending.
+    public synchronized String[] get(int index) throws IOException {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index + " of " + size);
+        int page = index / PAGE_ROWS;
+        String[][] rows = pages.get(page);
+        if (rows == null) {
+            rows = readPage(page);
+            pages.put(page, rows);
+        }
+        return rows[index % PAGE_ROWS];
+    }
+
+    private String[][] readPage(int page) throws IOException {
+        flush();
+        int first = page * PAGE_ROWS;
+        int count = Math.min(PAGE_ROWS, size - first);
+        long start = offsets[first];
+        long end = first + count < size ? offsets[first + count] : written;
+        byte[] bytes = new byte[(int) (end - start)];
+        file.seek(start);
+        file.readFully(bytes);
+        String[][] rows = new String[count][];
+        int from = 0;
+        for (int i = 0; i < count; i++) {
+            int to = (int) ((first + i + 1 < size ? offsets[first + i + 1] : end) - start);
+            // Without the newline
+            rows[i] = RecordParser.split(new String(bytes, from, to - from - 1, StandardCharsets.UTF_8));
+            from = to;
+        }
+        return rows;
+    }
+
+    private void flush() throws IOException {
+        if (pending.size() == 0) return;
+        file.seek(written);
+        file.write(pending.toByteArray());
+        written += pending.size();
+        pending.reset();
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            file.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        path.delete();
+    }
+}
@@ -0,0 +1,471 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.*;
+
+// Process-wide cache of parsed data files. Each file is read once and kept in memory
+// together with a primary key index on column 0 and the secondary indexes declared in
+// IndexFile. The cached copy is reused until the modification time or size of the file
+// (or its journal) changes on disk. Writes made through FileHandler are mirrored into the
+// cached rows and indexes incrementally, and so, through refresh(), are the appends another
+// process makes to a file or its journal.
+public class RecordStore {
+    static final Object LOCK = new Object();
+
+    private static final Map<String, Table> tables = new HashMap<>();
+    private static final List<ChangeListener> listeners = new ArrayList<>();
+    // The disk state of every file as of the last write, load or refresh seen by this process
+    private static final Map<String, String> seen = new HashMap<>();
+
+    // Told about every write made through FileHandler, Batch or Logger, while LOCK is held.
+    public interface ChangeListener {
+        // removed holds the rows an update or delete replaced (empty for appends); added the new rows
+        void changed(String filename, List<String[]> removed, List<String[]> added);
+
+        // The file changed in a way that could not be tracked row by row
+        default void untracked(String filename) {
+        }
+
+        // The file was rewritten (journal compaction) without changing its records
+        default void rewritten(String filename) {
+        }
+    }
+
+    private RecordStore() {
+    }
+
+    // Sorted list of row positions that share one index value.
+    private static class Postings {
+        int[] positions = new int[2];
+        int size;
+
+        void add(int position) {
+            int at = Arrays.binarySearch(positions, 0, size, position);
+            if (at >= 0) return;
+            at = -at - 1;
+            if (size == positions.length) positions = Arrays.copyOf(positions, size * 2);
+            System.arraycopy(positions, at, positions, at + 1, size - at);
+            positions[at] = position;
+            size++;
+        }
+
+        void remove(int position) {
+            int at = Arrays.binarySearch(positions, 0, size, position);
+            if (at < 0) return;
+            System.arraycopy(positions, at + 1, positions, at, size - at - 1);
+            size--;
+        }
+    }
+
+    static class Table {
+        final String filename;
+        long lastModified;
+        long length;
+        long journalModified;
+        long journalLength;
+        long generation;
+        // Deleted rows are left as null so positions in the indexes stay valid
+        private ArrayList<String[]> rows = new ArrayList<>();
+        private int deleted;
+        private final Map<Integer, Map<String, Postings>> indexes = new HashMap<>();
+        private List<String[]> snapshot;
+
+        Table(String filename) {
+            this.filename = filename;
+            // Never matches the disk, so the first access always loads (even a missing file)
+            this.lastModified = -1;
+        }
+
+        void load(List<String[]> loaded) {
+            rows = new ArrayList<>(loaded);
+            deleted = 0;
+            rebuildIndexes();
+            changed();
+        }
+
+        private void rebuildIndexes() {
+            indexes.clear();
+            indexes.put(0, new HashMap<>());
+            for (int column : IndexFile.declaredColumns(filename)) {
+                indexes.putIfAbsent(column, new HashMap<>());
+            }
+            for (int pos = 0; pos < rows.size(); pos++) {
+                String[] row = rows.get(pos);
+                if (row != null) index(pos, row);
+            }
+        }
+
+        private void index(int pos, String[] row) {
+            for (Map.Entry<Integer, Map<String, Postings>> entry : indexes.entrySet()) {
+                int column = entry.getKey();
+                if (row.length > column) {
+                    entry.getValue().computeIfAbsent(row[column], k -> new Postings()).add(pos);
+                }
+            }
+        }
+
+        private void unindex(int pos, String[] row) {
+            for (Map.Entry<Integer, Map<String, Postings>> entry : indexes.entrySet()) {
+                int column = entry.getKey();
+                if (row.length > column) {
+                    Postings postings = entry.getValue().get(row[column]);
+                    if (postings == null) continue;
+                    postings.remove(pos);
+                    if (postings.size == 0) entry.getValue().remove(row[column]);
+                }
+            }
+        }
+
+        String[] first(String key) {
+            Postings postings = indexes.get(0).get(key);
+            return postings == null ? null : rows.get(postings.positions[0]);
+        }
+
+        List<String[]> lookup(int column, String value) {
+            List<String[]> result = new ArrayList<>();
+            Map<String, Postings> index = indexes.get(column);
+            if (index != null) {
+                Postings postings = index.get(value);
+                if (postings != null) {
+                    for (int i = 0; i < postings.size; i++) result.add(rows.get(postings.positions[i]));
+                }
+            } else {
+                for (String[] row : rows) {
+                    if (row != null && row.length > column && row[column].equals(value)) result.add(row);
+                }
+            }
+            return result;
+        }
+
+        // Positions of the rows a keyed mutation applies to, found through an index when one
+        // of its key columns is indexed.
+        private int[] matching(Journal.Mutation mutation) {
+            for (int i = 0; i < mutation.keyColumns.length; i++) {
+                Map<String, Postings> index = indexes.get(mutation.keyColumns[i]);
+                if (index == null) continue;
+                Postings postings = index.get(mutation.keyValues[i]);
+                if (postings == null) return new int[0];
+                int[] found = new int[postings.size];
+                int n = 0;
+                for (int k = 0; k < postings.size; k++) {
+                    int pos = postings.positions[k];
+                    if (mutation.matches(rows.get(pos))) found[n++] = pos;
+                }
+                return Arrays.copyOf(found, n);
+            }
+            int[] found = new int[16];
+            int n = 0;
+            for (int pos = 0; pos < rows.size(); pos++) {
+                String[] row = rows.get(pos);
+                if (row != null && mutation.matches(row)) {
+                    if (n == found.length) found = Arrays.copyOf(found, n * 2);
+                    found[n++] = pos;
+                }
+            }
+            return Arrays.copyOf(found, n);
+        }
+
+        List<String[]> lookup(Journal.Mutation mutation) {
+            int[] positions = matching(mutation);
+            List<String[]> result = new ArrayList<>(positions.length);
+            for (int pos : positions) result.add(rows.get(pos));
+            return result;
+        }
+
+        // Returns the rows the mutation replaced or deleted.
+        List<String[]> apply(Journal.Mutation mutation) {
+            if (mutation.op == 'A') {
+                int pos = rows.size();
+                rows.add(mutation.data);
+                index(pos, mutation.data);
+                changed();
+                return Collections.emptyList();
+            }
+            int[] positions = matching(mutation);
+            if (positions.length == 0) return Collections.emptyList();
+            List<String[]> removed = new ArrayList<>(positions.length);
+            for (int pos : positions) {
+                removed.add(rows.get(pos));
+                unindex(pos, rows.get(pos));
+                if (mutation.op == 'U') {
+                    rows.set(pos, mutation.data);
+                    index(pos, mutation.data);
+                } else {
+                    rows.set(pos, null);
+                    deleted++;
+                }
+            }
+            if (deleted > 1024 && deleted > rows.size() / 2) {
+                rows.removeIf(Objects::isNull);
+                deleted = 0;
+                rebuildIndexes();
+            }
+            changed();
+            return removed;
+        }
+
+        private void changed() {
+            snapshot = null;
+            generation++;
+        }
+
+        boolean isStale() {
+            File file = FileHandler.dataFile(filename);
+            File journal = Journal.journalFile(filename);
+            return lastModified != file.lastModified() || length != file.length()
+                || journalModified != journal.lastModified() || journalLength != journal.length();
+        }
+
+        void stamp() {
+            File file = FileHandler.dataFile(filename);
+            File journal = Journal.journalFile(filename);
+            lastModified = file.lastModified();
+            length = file.length();
+            journalModified = journal.lastModified();
+            journalLength = journal.length();
+        }
+
+        // The entries another process appended to the file or its journal since stamp(), read
+        // from the offsets recorded there, or null if the files changed in any other way.
+        List<Journal.Mutation> catchUp() throws IOException {
+            File file = FileHandler.dataFile(filename);
+            File journal = Journal.journalFile(filename);
+            long modified = file.lastModified();
+            long size = file.length();
+            long journalMod = journal.lastModified();
+            long journalSize = journal.length();
+            List<Journal.Mutation> mutations;
+            if (journalMod == journalModified && journalSize == journalLength) {
+                // The base file only grows while there is no journal
+                if (journalSize > 0 || size <= length) return null;
+                String text = Journal.readLines(file, length, size);
+                if (text == null) return null;
+                mutations = new ArrayList<>();
+                for (String line : text.split("\\R")) {
+                    if (!line.trim().isEmpty()) mutations.add(Journal.Mutation.append(RecordParser.split(line)));
+                }
+            } else if (modified == lastModified && size == length && journalSize > journalLength) {
+                mutations = Journal.readRange(filename, journalLength, journalSize);
+                if (mutations == null) return null;
+            } else {
+                return null;
+            }
+            // Up to what was read; anything appended meanwhile is picked up next time
+            lastModified = modified;
+            length = size;
+            journalModified = journalMod;
+            journalLength = journalSize;
+            return mutations;
+        }
+
+        List<String[]> snapshot() {
+            if (snapshot == null) {
+                List<String[]> live = new ArrayList<>(rows.size() - deleted);
+                for (String[] row : rows) {
+                    if (row != null) live.add(row);
+                }
+                snapshot = Collections.unmodifiableList(live);
+            }
+            return snapshot;
+        }
+    }
+
+    // Returns all records of a file, reloading it only if it changed on disk.
+    public static List<String[]> getAll(String filename) {
+        synchronized (LOCK) {
+            return table(filename).snapshot();
+        }
+    }
+
+    // Returns the first record whose column 0 equals the given key, or null.
+    public static String[] findByKey(String filename, String key) {
+        synchronized (LOCK) {
+            return table(filename).first(key);
+        }
+    }
+
+    // Returns the records whose given column equals the value, in file order. Indexed columns
+    // cost time proportional to the number of matches. If the file is not cached yet, the
+    // persisted index is used so that the whole file does not have to be loaded.
+    public static List<String[]> lookup(String filename, int column, String value) {
+        synchronized (LOCK) {
+            Table table = tables.get(filename);
+            boolean cached = table != null && !table.isStale();
+            if (!cached && !Journal.hasPending(filename) && IndexFile.isDeclared(filename, column)) {
+                List<String[]> rows = IndexFile.lookup(filename, column, value);
+                if (rows != null) return rows;
+            }
+            return table(filename).lookup(column, value);
+        }
+    }
+
+    // The records matching the mutation's key columns. Callers hold LOCK. Like lookup, a file
+    // that is not cached is checked through a persisted index instead of being loaded.
+    static List<String[]> matchingRows(String filename, Journal.Mutation mutation) {
+        if (!isFresh(filename) && !Journal.hasPending(filename)) {
+            for (int i = 0; i < mutation.keyColumns.length; i++) {
+                if (!IndexFile.isDeclared(filename, mutation.keyColumns[i])) continue;
+                List<String[]> rows = IndexFile.lookup(filename, mutation.keyColumns[i], mutation.keyValues[i]);
+                if (rows == null) break;
+                rows.removeIf(row -> !mutation.matches(row));
+                return rows;
+            }
+        }
+        return table(filename).lookup(mutation);
+    }
+
+    // Increases every time the cached contents of the file change.
+    public static long generation(String filename) {
+        synchronized (LOCK) {
+            return table(filename).generation;
+        }
+    }
+
+    // Loads (or refreshes) the table so that a write can be checked and then mirrored in memory.
+    static Table fresh(String filename) {
+        return table(filename);
+    }
+
+    // True if the file is cached and the cached copy still matches the disk.
+    static boolean isFresh(String filename) {
+        Table table = tables.get(filename);
+        return table != null && !table.isStale();
+    }
+
+    // True if the cached table was fresh when the file was length bytes long and the file has
+    // only grown by appended bytes since: an append made without holding LOCK (see Logger) was
+    // then the only change, and the table can follow it.
+    static boolean isFreshAt(String filename, long length, long appended) {
+        Table table = tables.get(filename);
+        if (table == null || table.lastModified == -1 || table.length != length) return false;
+        File journal = Journal.journalFile(filename);
+        return FileHandler.dataFile(filename).length() == length + appended
+            && table.journalModified == journal.lastModified() && table.journalLength == journal.length();
+    }
+
+    // Called by the write paths, holding LOCK, after a mutation reached the disk. If the table
+    // was fresh before the write the change is mirrored into it, otherwise it is dropped. matches
+    // are the rows an update or delete hit, when the caller already looked them up.
+    static void written(String filename, Journal.Mutation mutation, boolean cached, List<String[]> matches) {
+        Table table = tables.get(filename);
+        List<String[]> removed = matches;
+        if (cached && table != null) {
+            removed = table.apply(mutation);
+            table.stamp();
+        } else if (table != null) {
+            table.lastModified = -1;
+        }
+        seen.put(filename, diskState(filename));
+        fire(filename, mutation, removed);
+    }
+
+    private static void fire(String filename, Journal.Mutation mutation, List<String[]> removed) {
+        if (listeners.isEmpty()) return;
+        if (mutation.op == 'A') {
+            fireChanged(filename, Collections.emptyList(), Collections.singletonList(mutation.data));
+        } else if (removed == null) {
+            untracked(filename);
+        } else if (!removed.isEmpty()) {
+            fireChanged(filename, removed,
+                mutation.op == 'U' ? Collections.nCopies(removed.size(), mutation.data) : Collections.emptyList());
+        }
+    }
+
+    // Called when a data file or its journal changed on disk (see DataWatcher). A change made by
+    // another process is applied to the cached table entry by entry when it only appended to
+    // the file or its journal, and reported to the listeners like a write of this process;
+    // anything else drops the cache and is reported as untracked. Returns false, doing nothing,
+    // if the file is as this process last wrote or read it.
+    public static boolean refresh(String filename) {
+        synchronized (LOCK) {
+            String state = diskState(filename);
+            if (state.equals(seen.get(filename))) return false;
+            seen.put(filename, state);
+            Table table = tables.get(filename);
+            if (table == null || table.lastModified == -1) {
+                // Not cached: nothing to update, but views of the file are out of date
+                untracked(filename);
+                return true;
+            }
+            if (!table.isStale()) return false;
+            List<Journal.Mutation> mutations;
+            try {
+                mutations = table.catchUp();
+            } catch (IOException e) {
+                e.printStackTrace();
+                mutations = null;
+            }
+            if (mutations == null) {
+                untracked(filename);
+                return true;
+            }
+            for (Journal.Mutation mutation : mutations) {
+                fire(filename, mutation, table.apply(mutation));
+            }
+            return true;
+        }
+    }
+
+    private static String diskState(String filename) {
+        File file = FileHandler.dataFile(filename);
+        File journal = Journal.journalFile(filename);
+        return file.lastModified() + " " + file.length() + " " + journal.lastModified() + " " + journal.length();
+    }
+
+    // A write failed part way or bypassed the write paths: drop the cache and tell the listeners.
+    static void untracked(String filename) {
+        invalidate(filename);
+        for (ChangeListener listener : listeners) listener.untracked(filename);
+    }
+
+    private static void fireChanged(String filename, List<String[]> removed, List<String[]> added) {
+        for (ChangeListener listener : listeners) listener.changed(filename, removed, added);
+    }
+
+    public static void addListener(ChangeListener listener) {
+        synchronized (LOCK) {
+            listeners.add(listener);
+        }
+    }
+
+    // Records the current file state after a rewrite that did not change the logical contents.
+    static void restamp(String filename) {
+        Table table = tables.get(filename);
+        if (table != null) table.stamp();
+        seen.put(filename, diskState(filename));
+        for (ChangeListener listener : listeners) listener.rewritten(filename);
+    }
+
+    // Drops the cached copy so the next read goes back to disk.
+    public static void invalidate(String filename) {
+        synchronized (LOCK) {
+            Table table = tables.get(filename);
+            if (table != null) table.lastModified = -1;
+        }
+    }
+
+    private static Table table(String filename) {
+        Table table = tables.computeIfAbsent(filename, Table::new);
+        if (table.isStale()) {
+            // Another process must not compact the file between reading it and its journal
+            FileChannel lock = null;
+            try {
+                lock = Journal.lock(filename);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            try {
+                List<String[]> rows = new ArrayList<>(FileHandler.parseFile(filename));
+                Journal.replay(filename, rows);
+                table.load(rows);
+                table.stamp();
+                seen.put(filename, diskState(filename));
+            } finally {
+                Journal.unlock(filename, lock);
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,106 @@
+package utils;
+
+import java.util.Arrays;
+
+// A single " | " delimited record viewed in place over a shared char buffer.
+// Fields are exposed as CharSequence views; a String is only created by getString().
+public class RecordView {
+    private char[] buf;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int count;
+    private FieldView[] views = new FieldView[0];
+
+    // Points the view at buf[from, to) and locates the field boundaries.
+    // Trailing empty fields are dropped, the same as String.split(" \\| ").
+    void reset(char[] buf, int from, int to) {
+        this.buf = buf;
+        count = 0;
+        boolean split = false;
+        int fieldStart = from;
+        int i = from;
+        while (i <= to - 3) {
+            if (buf[i] == ' ' && buf[i + 1] == '|' && buf[i + 2] == ' ') {
+                addField(fieldStart, i);
+                split = true;
+                i += 3;
+                fieldStart = i;
+            } else {
+                i++;
+            }
+        }
+        addField(fieldStart, to);
+        int min = split ? 0 : 1;
+        while (count > min && starts[count - 1] == ends[count - 1]) count--;
+    }
+
+    private void addField(int start, int end) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    public int fieldCount() {
+        return count;
+    }
+
+    public CharSequence field(int i) {
+        if (i >= count) throw new IndexOutOfBoundsException("field " + i + " of " + count);
+        if (views.length < count) {
+            FieldView[] grown = Arrays.copyOf(views, Math.max(count, 8));
+            for (int k = views.length; k < grown.length; k++) grown[k] = new FieldView(k);
+            views = grown;
+        }
+        return views[i];
+    }
+
+    // Compares a field without materializing it.
+    public boolean fieldEquals(int i, String value) {
+        if (i >= count) return false;
+        int start = starts[i];
+        int len = ends[i] - start;
+        if (len != value.length()) return false;
+        for (int k = 0; k < len; k++) {
+            if (buf[start + k] != value.charAt(k)) return false;
+        }
+        return true;
+    }
+
+    public String getString(int i) {
+        return new String(buf, starts[i], ends[i] - starts[i]);
+    }
+
+    public String[] toArray() {
+        String[] fields = new String[count];
+        for (int i = 0; i < count; i++) fields[i] = getString(i);
+        return fields;
+    }
+
+    private class FieldView implements CharSequence {
+        private final int index;
+
+        FieldView(int index) {
+            this.index = index;
+        }
+
+        public int length() {
+            return ends[index] - starts[index];
+        }
+
+        public char charAt(int k) {
+            return buf[starts[index] + k];
+        }
+
+        public CharSequence subSequence(int from, int to) {
+            return toString().subSequence(from, to);
+        }
+
+        public String toString() {
+            return getString(index);
+        }
+    }
+}
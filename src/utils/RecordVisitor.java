@@ -0,0 +1,7 @@
+package utils;
+
+// Callback for FileHandler.forEachRecord. Return false to stop the scan early.
+// The RecordView is reused for every line, so copy out anything that must outlive the call.
+public interface RecordVisitor {
+    boolean visit(RecordView record);
+}
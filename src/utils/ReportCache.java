@@ -0,0 +1,98 @@
+package utils;
+
+import java.util.*;
+
+// Recently generated module reports, so that asking for the same report again is instant.
+// An entry remembers the data it was computed from: the module's assessments, the version of
+// their results (see ResultAggregates.version) and the generations of grading.txt and of
+// assessments.txt, whose maximum marks the grades are worked out against. It is served
+// only while all of these are unchanged, so a new mark for one module does not evict the others.
+//
+// At most MAX_ENTRIES reports are kept; the least recently used one is dropped first.
+public class ReportCache {
+    private static final String ASSESSMENTS_FILE = "assessments.txt";
+    private static final String GRADING_FILE = "grading.txt";
+    private static final int MAX_ENTRIES = 64;
+
+    private static final Map<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private static long hits;
+    private static long misses;
+
+    private static class Entry {
+        final List<String> assessmentIds;
+        final long version;
+        final ReportService.ModuleReport report;
+
+        Entry(List<String> assessmentIds, long version, ReportService.ModuleReport report) {
+            this.assessmentIds = assessmentIds;
+            this.version = version;
+            this.report = report;
+        }
+    }
+
+    private ReportCache() {
+    }
+
+    // The module's report, from the cache if nothing it depends on changed since.
+    public static ReportService.ModuleReport get(String moduleId, ReportService.Progress progress) {
+        List<String> assessmentIds = assessmentsOf(moduleId);
+        long version = version(assessmentIds, progress);
+        synchronized (entries) {
+            Entry entry = entries.get(moduleId);
+            if (entry != null && entry.version == version && entry.assessmentIds.equals(assessmentIds)) {
+                hits++;
+                return entry.report;
+            }
+            misses++;
+        }
+        ReportService.ModuleReport report = ReportService.moduleReport(assessmentIds, progress);
+        synchronized (entries) {
+            entries.put(moduleId, new Entry(assessmentIds, version, report));
+        }
+        return report;
+    }
+
+    // Both counters only grow, so their sum moves whenever either does
+    private static long version(List<String> assessmentIds, ReportService.Progress progress) {
+        return ResultAggregates.version(assessmentIds, progress) + RecordStore.generation(GRADING_FILE)
+            + RecordStore.generation(ASSESSMENTS_FILE);
+    }
+
+    private static List<String> assessmentsOf(String moduleId) {
+        List<String> ids = new ArrayList<>();
+        for (String[] assessment : FileHandler.getAllRecords(ASSESSMENTS_FILE)) {
+            if (assessment.length >= 2 && assessment[1].equals(moduleId)) ids.add(assessment[0]);
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    public static void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public static long hits() {
+        synchronized (entries) {
+            return hits;
+        }
+    }
+
+    public static long misses() {
+        synchronized (entries) {
+            return misses;
+        }
+    }
+
+    public static int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
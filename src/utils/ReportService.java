@@ -0,0 +1,396 @@
+package utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Reports over many modules at once. A full pass over results.txt is split into line-aligned
+// byte ranges that are scanned in parallel on a ForkJoin pool; every range builds its own
+// partial result (per-assessment MarkStatistics for reports) and the partial results are
+// merged pairwise on the way back up. Module summaries merge the statistics of the module's assessments.
+//
+// ResultAggregates uses the parallel pass when it has to recompute, so reports themselves
+// normally only merge the maintained aggregates.
+public class ReportService {
+    private static final String RESULTS_FILE = "results.txt";
+    private static final String MODULES_FILE = "modules.txt";
+    private static final String ASSESSMENTS_FILE = "assessments.txt";
+    // Ranges smaller than this are not split any further
+    private static final long MIN_PARTITION_BYTES = 1L << 20;
+    private static final int MIN_PARTITION_ROWS = 20_000;
+
+    private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), p -> {
+        ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+        t.setName("report-worker-" + t.getPoolIndex());
+        return t;
+    }, null, false);
+
+    // Follows a full pass over results.txt. Called on the scanning threads, once per partition,
+    // with that partition's statistics (only valid during the call) and the running totals;
+    // done and total are bytes of results.txt, or rows while a journal is pending. The pass
+    // stops early once isCancelled() returns true.
+    public interface Progress {
+        void scanned(Map<String, MarkStatistics> partition, long records, long done, long total);
+
+        boolean isCancelled();
+    }
+
+    // One module's report: its mark statistics and how many marks fall in each grade.
+    public static class ModuleReport {
+        public final MarkStatistics statistics;
+        public final Map<String, Long> gradeCounts;
+
+        ModuleReport(MarkStatistics statistics, Map<String, Long> gradeCounts) {
+            this.statistics = statistics;
+            this.gradeCounts = Collections.unmodifiableMap(gradeCounts);
+        }
+
+        public double passRate() {
+            return statistics.count() == 0 ? 0 : 100.0 * statistics.passCount() / statistics.count();
+        }
+    }
+
+    // One row of a multi-module report.
+    public static class ModuleSummary extends ModuleReport {
+        public final String moduleId;
+        public final String moduleName;
+        public final String lecturerId;
+        public final int assessments;
+
+        ModuleSummary(String moduleId, String moduleName, String lecturerId, int assessments,
+                      MarkStatistics statistics, Map<String, Long> gradeCounts) {
+            super(statistics, gradeCounts);
+            this.moduleId = moduleId;
+            this.moduleName = moduleName;
+            this.lecturerId = lecturerId;
+            this.assessments = assessments;
+        }
+    }
+
+    private ReportService() {
+    }
+
+    // The pool reports run their parallel work on.
+    static ForkJoinPool pool() {
+        return pool;
+    }
+
+    // The report over the given assessments' marks.
+    public static ModuleReport moduleReport(Collection<String> assessmentIds, Progress progress) {
+        MarkStatistics stats = ResultAggregates.forAssessments(assessmentIds, progress);
+        Map<String, MarkStatistics> byAssessment = new HashMap<>();
+        Map<String, Double> maxMarks = new HashMap<>();
+        for (String id : assessmentIds) {
+            byAssessment.put(id, ResultAggregates.forAssessment(id));
+            maxMarks.put(id, maxMarks(FileHandler.findRecord(ASSESSMENTS_FILE, id)));
+        }
+        return new ModuleReport(stats, gradeCounts(assessmentIds, byAssessment, maxMarks, GradeScale.current()));
+    }
+
+    // An assessment's maximum; without a usable one marks are taken as percentages already,
+    // as GradeScale.grade(marks, maxMarks) does.
+    private static double maxMarks(String[] assessment) {
+        try {
+            double max = Double.parseDouble(assessment[3].trim());
+            return max > 0 ? max : 100;
+        } catch (NumberFormatException | NullPointerException | ArrayIndexOutOfBoundsException e) {
+            return 100;
+        }
+    }
+
+    // How many of the assessments' marks fall in each grade, in ascending order of marks, with
+    // marks no grade covers last as N/A. Marks are graded on their percentage of their
+    // assessment's maximum, like the student and lecturer views do. A sketch bin holds any
+    // marks within its width (marks can have any decimals), so its count is used as is only
+    // if the scale grades its whole width the same. The marks of assessments with a bin that
+    // crosses a grade boundary, or with marks outside the sketch's range (which share its end
+    // bins), are read from results.txt.
+    private static Map<String, Long> gradeCounts(Collection<String> assessmentIds, Map<String, MarkStatistics> byAssessment,
+                                                 Map<String, Double> maxMarks, GradeScale scale) {
+        Map<Integer, Long> bandCounts = new TreeMap<>();
+        long uncovered = 0;
+        for (String id : assessmentIds) {
+            MarkStatistics stats = byAssessment.get(id);
+            if (stats == null || stats.count() == 0) continue;
+            double max = maxMarks.getOrDefault(id, 100.0);
+            Map<Integer, Long> counts = binBands(stats, max, scale);
+            if (counts == null) {
+                counts = new HashMap<>();
+                for (String[] result : FileHandler.findRecords(RESULTS_FILE, 0, id)) {
+                    if (result.length < 3) continue;
+                    try {
+                        counts.merge(scale.band(Double.parseDouble(result[2]) * 100 / max), 1L, Long::sum);
+                    } catch (NumberFormatException e) {
+                        // Not counted in the statistics either
+                    }
+                }
+            }
+            for (Map.Entry<Integer, Long> entry : counts.entrySet()) {
+                if (entry.getKey() < 0) uncovered += entry.getValue(); else bandCounts.merge(entry.getKey(), entry.getValue(), Long::sum);
+            }
+        }
+        Map<String, Long> gradeCounts = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Long> entry : bandCounts.entrySet()) {
+            gradeCounts.merge(scale.gradeOf(entry.getKey()), entry.getValue(), Long::sum);
+        }
+        if (uncovered > 0) gradeCounts.merge("N/A", uncovered, Long::sum);
+        return gradeCounts;
+    }
+
+    // The number of marks in each band of the scale, from the sketch alone, or null if some
+    // occupied bin is not graded the same across its width.
+    private static Map<Integer, Long> binBands(MarkStatistics stats, double max, GradeScale scale) {
+        if (stats.min() < stats.low() || stats.max() > stats.high()) return null;
+        Map<Integer, Long> counts = new HashMap<>();
+        int last = stats.binCount() - 1;
+        for (int i = 0; i <= last; i++) {
+            if (stats.binTotal(i) == 0) continue;
+            double end = i < last ? Math.nextDown(stats.binStart(i + 1)) : stats.high();
+            // Percentages grow with the mark, so the ends decide for the whole bin
+            int band = scale.band(stats.binStart(i) * 100 / max);
+            if (band < 0 || band != scale.band(end * 100 / max)) return null;
+            counts.merge(band, stats.binTotal(i), Long::sum);
+        }
+        return counts;
+    }
+
+    // Every module led by the given academic leader.
+    public static List<ModuleSummary> forLeader(String leaderId) {
+        return forLeader(leaderId, null);
+    }
+
+    public static List<ModuleSummary> forLeader(String leaderId, Progress progress) {
+        List<String[]> modules = new ArrayList<>();
+        for (String[] module : FileHandler.getAllRecords(MODULES_FILE)) {
+            if (module.length >= 4 && module[3].equals(leaderId)) modules.add(module);
+        }
+        return summarize(modules, progress);
+    }
+
+    // Every module in modules.txt.
+    public static List<ModuleSummary> institution() {
+        return summarize(FileHandler.getAllRecords(MODULES_FILE), null);
+    }
+
+    // Summaries for the given modules.txt rows, in the same order. The modules are merged and
+    // graded in parallel on the report pool.
+    public static List<ModuleSummary> summarize(List<String[]> modules, Progress progress) {
+        Map<String, List<String>> assessmentsByModule = new HashMap<>();
+        Map<String, Double> maxMarks = new HashMap<>();
+        for (String[] assessment : FileHandler.getAllRecords(ASSESSMENTS_FILE)) {
+            if (assessment.length >= 2) {
+                assessmentsByModule.computeIfAbsent(assessment[1], k -> new ArrayList<>()).add(assessment[0]);
+                maxMarks.put(assessment[0], maxMarks(assessment));
+            }
+        }
+        Map<String, MarkStatistics> byAssessment = ResultAggregates.all(progress);
+        GradeScale scale = GradeScale.current();
+        return pool.submit(() -> modules.parallelStream()
+            .filter(module -> module.length >= 2)
+            .map(module -> {
+                List<String> ids = assessmentsByModule.getOrDefault(module[0], Collections.emptyList());
+                MarkStatistics stats = new MarkStatistics();
+                for (String id : ids) {
+                    MarkStatistics found = byAssessment.get(id);
+                    if (found != null) stats.merge(found);
+                }
+                return new ModuleSummary(module[0], module[1], module.length >= 3 ? module[2] : "",
+                    ids.size(), stats, gradeCounts(ids, byAssessment, maxMarks, scale));
+            })
+            .collect(java.util.stream.Collectors.toList())).join();
+    }
+
+    // Statistics of every assessment in results.txt, computed from scratch in one parallel pass.
+    public static Map<String, MarkStatistics> scanByAssessment() {
+        return scanByAssessment(null);
+    }
+
+    // As above, reporting to progress; returns null if the pass was cancelled.
+    public static Map<String, MarkStatistics> scanByAssessment(Progress progress) {
+        return scanResults(BY_ASSESSMENT, progress);
+    }
+
+    // What a parallel pass over results.txt computes: every partition starts from an empty
+    // result, adds its records to it, and partial results are merged pairwise.
+    interface Pass<R> {
+        R empty();
+
+        void add(R partial, RecordView record);
+
+        R merge(R into, R from);
+
+        // The partition's statistics for Progress.scanned, if the pass computes any
+        default Map<String, MarkStatistics> statistics(R partial) {
+            return Collections.emptyMap();
+        }
+    }
+
+    private static final Pass<Map<String, MarkStatistics>> BY_ASSESSMENT = new Pass<Map<String, MarkStatistics>>() {
+        public Map<String, MarkStatistics> empty() {
+            return new HashMap<>();
+        }
+
+        public void add(Map<String, MarkStatistics> partial, RecordView record) {
+            if (record.fieldCount() < 3) return;
+            String assessmentId = record.getString(0);
+            MarkStatistics stats = partial.get(assessmentId);
+            if (stats == null) {
+                stats = new MarkStatistics();
+                if (!stats.add(record.getString(2))) return;
+                partial.put(assessmentId, stats);
+            } else {
+                stats.add(record.getString(2));
+            }
+        }
+
+        public Map<String, MarkStatistics> merge(Map<String, MarkStatistics> into, Map<String, MarkStatistics> from) {
+            for (Map.Entry<String, MarkStatistics> entry : from.entrySet()) {
+                MarkStatistics stats = into.get(entry.getKey());
+                if (stats == null) into.put(entry.getKey(), entry.getValue()); else stats.merge(entry.getValue());
+            }
+            return into;
+        }
+
+        @Override
+        public Map<String, MarkStatistics> statistics(Map<String, MarkStatistics> partial) {
+            return partial;
+        }
+    };
+
+    // Runs a pass over all of results.txt on the report pool; returns null if it was cancelled.
+    static <R> R scanResults(Pass<R> pass, Progress progress) {
+        R result;
+        if (Journal.hasPending(RESULTS_FILE)) {
+            // The file alone is out of date; split the merged rows instead
+            List<String[]> rows = RecordStore.getAll(RESULTS_FILE);
+            result = pool.invoke(new RowTask<>(pass, new Tracker(progress, rows.size()), rows, 0, rows.size()));
+        } else {
+            File file = FileHandler.dataFile(RESULTS_FILE);
+            long length = file.length();
+            if (length < FileHandler.MAPPED_THRESHOLD) {
+                // Small files are read in one piece on the calling thread, without mapping them
+                Tracker tracker = new Tracker(progress, length);
+                R partial = pass.empty();
+                long[] count = new long[1];
+                FileHandler.forEachRecord(RESULTS_FILE, record -> {
+                    if (tracker.cancelled()) return false;
+                    count[0]++;
+                    pass.add(partial, record);
+                    return true;
+                });
+                tracker.finished(pass.statistics(partial), count[0], length);
+                result = partial;
+            } else {
+                result = pool.invoke(new FileTask<>(pass, new Tracker(progress, length), file, 0, length));
+            }
+        }
+        return progress != null && progress.isCancelled() ? null : result;
+    }
+
+    // Running totals of one pass, shared by its tasks
+    private static class Tracker {
+        final Progress progress;
+        final long total;
+        final AtomicLong records = new AtomicLong();
+        final AtomicLong done = new AtomicLong();
+
+        Tracker(Progress progress, long total) {
+            this.progress = progress;
+            this.total = total;
+        }
+
+        boolean cancelled() {
+            return progress != null && progress.isCancelled();
+        }
+
+        void finished(Map<String, MarkStatistics> partial, long count, long size) {
+            long seen = records.addAndGet(count);
+            long at = done.addAndGet(size);
+            if (progress != null && !progress.isCancelled()) progress.scanned(partial, seen, at, total);
+        }
+    }
+
+    private static class FileTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final Pass<R> pass;
+        private final Tracker tracker;
+        private final File file;
+        private final long from;
+        private final long to;
+
+        FileTask(Pass<R> pass, Tracker tracker, File file, long from, long to) {
+            this.pass = pass;
+            this.tracker = tracker;
+            this.file = file;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from > MIN_PARTITION_BYTES) {
+                long middle = from + (to - from) / 2;
+                FileTask<R> left = new FileTask<>(pass, tracker, file, from, middle);
+                left.fork();
+                R right = new FileTask<>(pass, tracker, file, middle, to).compute();
+                return pass.merge(left.join(), right);
+            }
+            R partial = pass.empty();
+            long[] count = new long[1];
+            try {
+                MappedRecordReader.scanRange(file, from, to, record -> {
+                    if (tracker.cancelled()) return false;
+                    count[0]++;
+                    pass.add(partial, record);
+                    return true;
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            tracker.finished(pass.statistics(partial), count[0], to - from);
+            return partial;
+        }
+    }
+
+    private static class RowTask<R> extends RecursiveTask<R> {
+        private static final long serialVersionUID = 1L;
+
+        private final Pass<R> pass;
+        private final Tracker tracker;
+        private final List<String[]> rows;
+        private final int from;
+        private final int to;
+
+        RowTask(Pass<R> pass, Tracker tracker, List<String[]> rows, int from, int to) {
+            this.pass = pass;
+            this.tracker = tracker;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected R compute() {
+            if (to - from > MIN_PARTITION_ROWS) {
+                int middle = (from + to) >>> 1;
+                RowTask<R> left = new RowTask<>(pass, tracker, rows, from, middle);
+                left.fork();
+                R right = new RowTask<>(pass, tracker, rows, middle, to).compute();
+                return pass.merge(left.join(), right);
+            }
+            R partial = pass.empty();
+            if (tracker.cancelled()) return partial;
+            RecordParser.scan(rows.subList(from, to), record -> {
+                pass.add(partial, record);
+                return true;
+            });
+            tracker.finished(pass.statistics(partial), to - from, to - from);
+            return partial;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package utils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Materialized mark statistics per assessment, kept up to date from the results write path
+// instead of rescanning results.txt for every report. Each write that appends, changes or
+// deletes a result adjusts the affected assessment in O(1) through a RecordStore listener.
+// Module statistics merge the module's assessments, so reports cost time proportional to
+// the number of assessments, not results.
+//
+// Main calls init() at startup so that writes are followed from the start of the session.
+// The aggregates are saved to data/.index/results.agg together with the size and modification
+// time of results.txt and its journal. If the file no longer matches that (an edit outside the
+// app, a crash before the save, a change that could not be tracked) the next read recomputes
+// everything from results.txt.
+public class ResultAggregates {
+    private static final String RESULTS_FILE = "results.txt";
+    private static final String SAVE_FILE = ".index/results.agg";
+    private static final long SAVE_DELAY_SECONDS = 2;
+
+    private static final Map<String, MarkStatistics> byAssessment = new HashMap<>();
+    // Assessments whose min/max may be loose after a mark was removed; rebuilt from the index on read
+    private static final Set<String> loose = new HashSet<>();
+    private static String stamp;
+    private static boolean loaded;
+    private static boolean dirty = true;
+    private static boolean saveScheduled;
+    // Bumped whenever the aggregates are replaced wholesale instead of updated row by row
+    private static long rebuilds;
+    // Bumped on every tracked write to a result of the assessment; read without the lock
+    private static final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "aggregate-saver");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        RecordStore.addListener(new RecordStore.ChangeListener() {
+            @Override
+            public void changed(String filename, List<String[]> removed, List<String[]> added) {
+                if (!filename.equals(RESULTS_FILE)) return;
+                for (String[] row : removed) versions.merge(row[0], 1L, Long::sum);
+                for (String[] row : added) versions.merge(row[0], 1L, Long::sum);
+                if (!loaded || dirty) return;
+                for (String[] row : removed) remove(row);
+                for (String[] row : added) add(row);
+                stamp = currentStamp();
+                scheduleSave();
+            }
+
+            @Override
+            public void untracked(String filename) {
+                if (filename.equals(RESULTS_FILE)) dirty = true;
+            }
+
+            @Override
+            public void rewritten(String filename) {
+                if (filename.equals(RESULTS_FILE) && loaded && !dirty) stamp = currentStamp();
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(new Thread(ResultAggregates::save, "aggregate-save"));
+    }
+
+    private ResultAggregates() {
+    }
+
+    // Loads the saved aggregates so that writes from now on are tracked. Cheap: only a full
+    // recompute, if one is needed, is left for the first read.
+    public static void init() {
+        synchronized (RecordStore.LOCK) {
+            ensureLoaded();
+        }
+    }
+
+    // Statistics of one assessment's marks.
+    public static MarkStatistics forAssessment(String assessmentId) {
+        refresh(null);
+        synchronized (RecordStore.LOCK) {
+            ensureConsistent();
+            MarkStatistics stats = new MarkStatistics();
+            MarkStatistics found = byAssessment.get(assessmentId);
+            if (found != null) stats.merge(found);
+            return stats;
+        }
+    }
+
+    // Statistics of all marks for the given assessments, e.g. those of one module.
+    public static MarkStatistics forAssessments(Collection<String> assessmentIds) {
+        return forAssessments(assessmentIds, null);
+    }
+
+    // As above; if a full recompute is needed it reports to progress and can be cancelled,
+    // in which case a CancellationException is thrown.
+    public static MarkStatistics forAssessments(Collection<String> assessmentIds, ReportService.Progress progress) {
+        refresh(progress);
+        synchronized (RecordStore.LOCK) {
+            ensureConsistent();
+            MarkStatistics stats = new MarkStatistics();
+            for (String id : assessmentIds) {
+                MarkStatistics found = byAssessment.get(id);
+                if (found != null) stats.merge(found);
+            }
+            return stats;
+        }
+    }
+
+    // A copy of the statistics of every assessment that has results.
+    public static Map<String, MarkStatistics> all(ReportService.Progress progress) {
+        refresh(progress);
+        synchronized (RecordStore.LOCK) {
+            ensureConsistent();
+            Map<String, MarkStatistics> copy = new HashMap<>();
+            for (Map.Entry<String, MarkStatistics> entry : byAssessment.entrySet()) {
+                MarkStatistics stats = new MarkStatistics();
+                stats.merge(entry.getValue());
+                copy.put(entry.getKey(), stats);
+            }
+            return copy;
+        }
+    }
+
+    // A number that changes whenever a result of one of the given assessments is written, or
+    // results.txt changed in a way that was not followed (the aggregates were rebuilt). Checks
+    // consistency first, like a read. For caches of anything derived from those results.
+    public static long version(Collection<String> assessmentIds, ReportService.Progress progress) {
+        refresh(progress);
+        long version;
+        synchronized (RecordStore.LOCK) {
+            ensureConsistent();
+            version = rebuilds;
+        }
+        // A sum of counters that only grow moves whenever any of them does
+        for (String id : assessmentIds) version += versions.getOrDefault(id, 0L);
+        return version;
+    }
+
+    public static MarkStatistics forModule(String moduleId) {
+        List<String> ids = new ArrayList<>();
+        for (String[] assessment : FileHandler.getAllRecords("assessments.txt")) {
+            if (assessment.length >= 2 && assessment[1].equals(moduleId)) ids.add(assessment[0]);
+        }
+        return forAssessments(ids);
+    }
+
+    // The consistency check: loads the saved aggregates on first use and recomputes them if
+    // results.txt changed in a way they did not follow.
+    private static void ensureConsistent() {
+        ensureLoaded();
+        if (dirty || !currentStamp().equals(stamp)) {
+            recompute();
+        }
+        if (!loose.isEmpty()) {
+            for (String id : loose) {
+                MarkStatistics stats = new MarkStatistics();
+                for (String[] row : FileHandler.findRecords(RESULTS_FILE, 0, id)) {
+                    if (row.length >= 3) stats.add(row[2]);
+                }
+                if (stats.count() > 0) byAssessment.put(id, stats); else byAssessment.remove(id);
+            }
+            loose.clear();
+            scheduleSave();
+        }
+    }
+
+    // Does a needed recompute without holding the lock, so that other reads and writes carry on
+    // meanwhile. The result is only installed if results.txt did not change during the scan;
+    // otherwise ensureConsistent() recomputes again under the lock.
+    private static void refresh(ReportService.Progress progress) {
+        String before;
+        synchronized (RecordStore.LOCK) {
+            ensureLoaded();
+            if (!dirty && currentStamp().equals(stamp)) return;
+            before = currentStamp();
+        }
+        Map<String, MarkStatistics> scanned = ReportService.scanByAssessment(progress);
+        if (scanned == null) throw new CancellationException();
+        synchronized (RecordStore.LOCK) {
+            // Changed while scanning, or recomputed by another caller meanwhile
+            if (!before.equals(currentStamp())) return;
+            if (!dirty && before.equals(stamp)) return;
+            byAssessment.clear();
+            loose.clear();
+            byAssessment.putAll(scanned);
+            stamp = before;
+            dirty = false;
+            rebuilds++;
+            scheduleSave();
+        }
+    }
+
+    private static void ensureLoaded() {
+        if (loaded) return;
+        load();
+        loaded = true;
+        if (!currentStamp().equals(stamp)) dirty = true;
+    }
+
+    private static void recompute() {
+        byAssessment.clear();
+        loose.clear();
+        byAssessment.putAll(ReportService.scanByAssessment());
+        stamp = currentStamp();
+        dirty = false;
+        rebuilds++;
+        scheduleSave();
+    }
+
+    private static void add(String[] row) {
+        if (row.length < 3) return;
+        try {
+            double mark = Double.parseDouble(row[2]);
+            byAssessment.computeIfAbsent(row[0], k -> new MarkStatistics()).add(mark);
+        } catch (NumberFormatException e) { }
+    }
+
+    private static void remove(String[] row) {
+        if (row.length < 3) return;
+        try {
+            double mark = Double.parseDouble(row[2]);
+            MarkStatistics stats = byAssessment.get(row[0]);
+            if (stats == null) return;
+            boolean edge = mark <= stats.min() || mark >= stats.max();
+            stats.remove(mark);
+            if (stats.count() == 0) {
+                byAssessment.remove(row[0]);
+            } else if (edge) {
+                loose.add(row[0]);
+            }
+        } catch (NumberFormatException e) { }
+    }
+
+    private static String currentStamp() {
+        File base = FileHandler.dataFile(RESULTS_FILE);
+        File journal = Journal.journalFile(RESULTS_FILE);
+        return base.length() + " " + base.lastModified() + " " + journal.length() + " " + journal.lastModified();
+    }
+
+    private static void scheduleSave() {
+        if (saveScheduled) return;
+        saveScheduled = true;
+        saver.schedule(ResultAggregates::save, SAVE_DELAY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // # <stamp>, then: assessmentId | count | mean | m2 | min | max | passed | bins
+    private static void save() {
+        synchronized (RecordStore.LOCK) {
+            saveScheduled = false;
+            if (!loaded || dirty) return;
+            File file = FileHandler.dataFile(SAVE_FILE);
+            File tmp = FileHandler.dataFile(SAVE_FILE + ".tmp");
+            file.getParentFile().mkdirs();
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(tmp, StandardCharsets.UTF_8))) {
+                writer.write("# " + stamp);
+                writer.newLine();
+                for (Map.Entry<String, MarkStatistics> entry : byAssessment.entrySet()) {
+                    writer.write(entry.getKey() + " | " + entry.getValue().encode());
+                    writer.newLine();
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                tmp.renameTo(file);
+            }
+        }
+    }
+
+    private static void load() {
+        File file = FileHandler.dataFile(SAVE_FILE);
+        if (!file.exists()) return;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if (line == null || !line.startsWith("# ")) return;
+            String savedStamp = line.substring(2);
+            Map<String, MarkStatistics> saved = new HashMap<>();
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                String[] fields = RecordParser.splitAll(line);
+                MarkStatistics stats = new MarkStatistics();
+                stats.decode(fields, 1);
+                saved.put(fields[0], stats);
+            }
+            byAssessment.clear();
+            byAssessment.putAll(saved);
+            stamp = savedStamp;
+            dirty = false;
+        } catch (IOException | RuntimeException e) {
+            // Unreadable save file: recompute
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package utils;
+
+import java.util.*;
+
+// Case-insensitive substring search over a few columns of a list of records, e.g. the users
+// shown in a table. Built once per list: every three-character sequence (trigram) of the
+// searchable text maps to the sorted rows containing it. A query intersects the rows of its
+// trigrams, starting with the rarest, and only the few candidates left are checked against
+// the text itself. Queries shorter than a trigram are answered by a plain scan.
+//
+// Row numbers are positions in the list the index was built from.
+public class SearchIndex {
+    private static final int GRAM = 3;
+    // Between fields, so that a match cannot span two of them
+    private static final char SEPARATOR = '\u0000';
+
+    private final String[] texts;
+    private final Map<Long, int[]> postings;
+
+    private SearchIndex(String[] texts, Map<Long, int[]> postings) {
+        this.texts = texts;
+        this.postings = postings;
+    }
+
+    public static SearchIndex build(List<String[]> records, int... columns) {
+        String[] texts = new String[records.size()];
+        Map<Long, Posting> lists = new HashMap<>();
+        StringBuilder sb = new StringBuilder();
+        for (int row = 0; row < texts.length; row++) {
+            String[] record = records.get(row);
+            sb.setLength(0);
+            for (int column : columns) {
+                if (sb.length() > 0) sb.append(SEPARATOR);
+                if (column < record.length) sb.append(record[column].toLowerCase(Locale.ROOT));
+            }
+            String text = sb.toString();
+            texts[row] = text;
+            for (int i = 0; i + GRAM <= text.length(); i++) {
+                long gram = gram(text, i);
+                if (gram >= 0) lists.computeIfAbsent(gram, k -> new Posting()).add(row);
+            }
+        }
+        Map<Long, int[]> postings = new HashMap<>(lists.size() * 2);
+        for (Map.Entry<Long, Posting> entry : lists.entrySet()) {
+            postings.put(entry.getKey(), Arrays.copyOf(entry.getValue().rows, entry.getValue().size));
+        }
+        return new SearchIndex(texts, postings);
+    }
+
+    // The rows of one trigram while building
+    private static final class Posting {
+        int[] rows = new int[4];
+        int size;
+
+        void add(int row) {
+            // Rows are added in order, so a repeat within the row is the last entry
+            if (size > 0 && rows[size - 1] == row) return;
+            if (size == rows.length) rows = Arrays.copyOf(rows, size * 2);
+            rows[size++] = row;
+        }
+    }
+
+    public int size() {
+        return texts.length;
+    }
+
+    // The rows whose text contains the query, ignoring case. A blank query matches every row.
+    public BitSet search(String query) {
+        String q = query.trim().toLowerCase(Locale.ROOT);
+        BitSet matches = new BitSet(texts.length);
+        if (q.isEmpty()) {
+            matches.set(0, texts.length);
+            return matches;
+        }
+        if (q.length() < GRAM) {
+            for (int row = 0; row < texts.length; row++) {
+                if (texts[row].contains(q)) matches.set(row);
+            }
+            return matches;
+        }
+
+        List<int[]> lists = new ArrayList<>();
+        for (int i = 0; i + GRAM <= q.length(); i++) {
+            int[] list = postings.get(gram(q, i));
+            if (list == null) return matches;
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.length));
+        int[] candidates = lists.get(0).clone();
+        int count = candidates.length;
+        for (int l = 1; l < lists.size() && count > 0; l++) {
+            int[] other = lists.get(l);
+            int kept = 0;
+            int j = 0;
+            for (int i = 0; i < count; i++) {
+                int row = candidates[i];
+                j = seek(other, j, row);
+                if (j < other.length && other[j] == row) candidates[kept++] = row;
+            }
+            count = kept;
+        }
+        // Having all the trigrams does not mean having them in sequence
+        for (int i = 0; i < count; i++) {
+            if (texts[candidates[i]].contains(q)) matches.set(candidates[i]);
+        }
+        return matches;
+    }
+
+    // The first position at or after from whose value is >= row, galloping then binary search
+    private static int seek(int[] list, int from, int row) {
+        int step = 1;
+        int hi = from;
+        while (hi < list.length && list[hi] < row) {
+            from = hi + 1;
+            hi += step;
+            step <<= 1;
+        }
+        int lo = from;
+        hi = Math.min(hi, list.length);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (list[mid] < row) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // The three chars at i packed into a key, or -1 if they cross a field boundary
+    private static long gram(String text, int i) {
+        long key = 0;
+        for (int k = 0; k < GRAM; k++) {
+            char c = text.charAt(i + k);
+            if (c == SEPARATOR) return -1;
+            key = (key << 16) | c;
+        }
+        return key;
+    }
+}
@@ -0,0 +1,292 @@
+package utils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Student transcripts: every module the student is enrolled in or has results for, with the
+// weighted final mark and grade (as FinalGrades computes them) and a GPA over the graded
+// modules. One student's transcript is put together from index lookups only (their results,
+// their enrollments, and the assessments, modules and classes those refer to), so it costs
+// time proportional to that student's records.
+//
+// Transcripts are cached per student. A write to one of the student's results or enrollments
+// invalidates only that student; changes to assessments, modules, classes or grading.txt, and
+// results.txt edits the app did not follow, invalidate everyone.
+//
+// forStudents() builds a cohort in bulk: one filtered pass over results.txt and
+// enrollments.txt, then the transcripts are assembled in parallel.
+public class Transcripts {
+    private static final String RESULTS_FILE = "results.txt";
+    private static final String ENROLLMENTS_FILE = "enrollments.txt";
+    private static final String ASSESSMENTS_FILE = "assessments.txt";
+    private static final String MODULES_FILE = "modules.txt";
+    private static final String CLASSES_FILE = "classes.txt";
+    private static final String GRADING_FILE = "grading.txt";
+    private static final int MAX_ENTRIES = 512;
+
+    private static final Map<String, Long> studentVersions = new ConcurrentHashMap<>();
+    private static final Map<String, Entry> cache = new LinkedHashMap<String, Entry>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private static volatile long epoch;
+
+    // One module on a transcript.
+    public static final class ModuleLine {
+        public final String moduleId;
+        public final String moduleName;
+        public final int assessments;
+        public final int completed;
+        public final double percentage;
+        public final String grade;     // null while there are no results yet
+        public final double points;    // NaN if not graded
+
+        ModuleLine(String moduleId, String moduleName, int assessments, int completed, double percentage, String grade, double points) {
+            this.moduleId = moduleId;
+            this.moduleName = moduleName;
+            this.assessments = assessments;
+            this.completed = completed;
+            this.percentage = percentage;
+            this.grade = grade;
+            this.points = points;
+        }
+    }
+
+    public static final class Transcript {
+        public final String studentId;
+        public final List<ModuleLine> modules;
+        public final double gpa;       // NaN without any graded module
+
+        Transcript(String studentId, List<ModuleLine> modules) {
+            this.studentId = studentId;
+            this.modules = Collections.unmodifiableList(modules);
+            double sum = 0;
+            int graded = 0;
+            for (ModuleLine line : modules) {
+                if (!Double.isNaN(line.points)) {
+                    sum += line.points;
+                    graded++;
+                }
+            }
+            this.gpa = graded == 0 ? Double.NaN : sum / graded;
+        }
+    }
+
+    private static class Entry {
+        final long version;
+        final Transcript transcript;
+
+        Entry(long version, Transcript transcript) {
+            this.version = version;
+            this.transcript = transcript;
+        }
+    }
+
+    // Reference data for building transcripts: looked up through the indexes for a single
+    // student, or loaded once into maps for a cohort.
+    private interface Lookup {
+        String[] assessment(String assessmentId);
+
+        List<String[]> moduleAssessments(String moduleId);
+
+        String[] module(String moduleId);
+
+        String[] classRow(String classId);
+    }
+
+    private static final Lookup INDEXED = new Lookup() {
+        public String[] assessment(String assessmentId) {
+            return FileHandler.findRecord(ASSESSMENTS_FILE, assessmentId);
+        }
+
+        public List<String[]> moduleAssessments(String moduleId) {
+            return FileHandler.findRecords(ASSESSMENTS_FILE, 1, moduleId);
+        }
+
+        public String[] module(String moduleId) {
+            return FileHandler.findRecord(MODULES_FILE, moduleId);
+        }
+
+        public String[] classRow(String classId) {
+            return FileHandler.findRecord(CLASSES_FILE, classId);
+        }
+    };
+
+    static {
+        // Runs under RecordStore.LOCK, so it must not wait for the cache lock
+        RecordStore.addListener(new RecordStore.ChangeListener() {
+            @Override
+            public void changed(String filename, List<String[]> removed, List<String[]> added) {
+                int column;
+                if (filename.equals(RESULTS_FILE)) column = 1;
+                else if (filename.equals(ENROLLMENTS_FILE)) column = 0;
+                else return;
+                for (String[] row : removed) if (row.length > column) studentVersions.merge(row[column], 1L, Long::sum);
+                for (String[] row : added) if (row.length > column) studentVersions.merge(row[column], 1L, Long::sum);
+            }
+
+            @Override
+            public void untracked(String filename) {
+                if (filename.equals(RESULTS_FILE) || filename.equals(ENROLLMENTS_FILE)) epoch++;
+            }
+        });
+    }
+
+    private Transcripts() {
+    }
+
+    public static Transcript forStudent(String studentId) {
+        long version = sharedVersion() + studentVersions.getOrDefault(studentId, 0L);
+        synchronized (cache) {
+            Entry entry = cache.get(studentId);
+            if (entry != null && entry.version == version) return entry.transcript;
+        }
+        Transcript transcript = build(studentId, FileHandler.findRecords(RESULTS_FILE, 1, studentId),
+            FileHandler.findRecords(ENROLLMENTS_FILE, 0, studentId), INDEXED, GradeScale.current());
+        synchronized (cache) {
+            cache.put(studentId, new Entry(version, transcript));
+        }
+        return transcript;
+    }
+
+    // Transcripts of a whole cohort, keyed by student ID in the given order. Cached ones are
+    // reused; the rest are built on the report pool and cached as well.
+    public static Map<String, Transcript> forStudents(Collection<String> studentIds) {
+        long shared = sharedVersion();
+        Map<String, Transcript> transcripts = new LinkedHashMap<>();
+        Map<String, Long> versions = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        synchronized (cache) {
+            for (String id : studentIds) {
+                long version = shared + studentVersions.getOrDefault(id, 0L);
+                Entry entry = cache.get(id);
+                transcripts.put(id, entry != null && entry.version == version ? entry.transcript : null);
+                if (entry == null || entry.version != version) {
+                    missing.add(id);
+                    versions.put(id, version);
+                }
+            }
+        }
+        if (missing.isEmpty()) return transcripts;
+
+        Map<String, List<String[]>> results = new HashMap<>();
+        FileHandler.forEachMatching(RESULTS_FILE, 1, missing, record -> {
+            results.computeIfAbsent(record.getString(1), k -> new ArrayList<>()).add(record.toArray());
+            return true;
+        });
+        Map<String, List<String[]>> enrollments = new HashMap<>();
+        FileHandler.forEachMatching(ENROLLMENTS_FILE, 0, missing, record -> {
+            enrollments.computeIfAbsent(record.getString(0), k -> new ArrayList<>()).add(record.toArray());
+            return true;
+        });
+        Lookup loaded = loadAll();
+        GradeScale scale = GradeScale.current();
+
+        List<String> ids = new ArrayList<>(missing);
+        List<Transcript> built = ReportService.pool().submit(() -> ids.parallelStream()
+            .map(id -> build(id, results.getOrDefault(id, Collections.emptyList()),
+                enrollments.getOrDefault(id, Collections.emptyList()), loaded, scale))
+            .collect(java.util.stream.Collectors.toList())).join();
+        synchronized (cache) {
+            for (Transcript transcript : built) {
+                transcripts.put(transcript.studentId, transcript);
+                cache.put(transcript.studentId, new Entry(versions.get(transcript.studentId), transcript));
+            }
+        }
+        return transcripts;
+    }
+
+    // Counters that only grow, so the sum moves whenever any of them does
+    private static long sharedVersion() {
+        return epoch + ResultAggregates.version(Collections.emptyList(), null)
+            + RecordStore.generation(ASSESSMENTS_FILE) + RecordStore.generation(MODULES_FILE)
+            + RecordStore.generation(CLASSES_FILE) + RecordStore.generation(GRADING_FILE);
+    }
+
+    private static Lookup loadAll() {
+        Map<String, String[]> assessments = new HashMap<>();
+        Map<String, List<String[]>> byModule = new HashMap<>();
+        for (String[] row : FileHandler.getAllRecords(ASSESSMENTS_FILE)) {
+            assessments.putIfAbsent(row[0], row);
+            if (row.length >= 2) byModule.computeIfAbsent(row[1], k -> new ArrayList<>()).add(row);
+        }
+        Map<String, String[]> modules = new HashMap<>();
+        for (String[] row : FileHandler.getAllRecords(MODULES_FILE)) modules.putIfAbsent(row[0], row);
+        Map<String, String[]> classes = new HashMap<>();
+        for (String[] row : FileHandler.getAllRecords(CLASSES_FILE)) classes.putIfAbsent(row[0], row);
+        return new Lookup() {
+            public String[] assessment(String assessmentId) {
+                return assessments.get(assessmentId);
+            }
+
+            public List<String[]> moduleAssessments(String moduleId) {
+                return byModule.getOrDefault(moduleId, Collections.emptyList());
+            }
+
+            public String[] module(String moduleId) {
+                return modules.get(moduleId);
+            }
+
+            public String[] classRow(String classId) {
+                return classes.get(classId);
+            }
+        };
+    }
+
+    private static Transcript build(String studentId, List<String[]> results, List<String[]> enrollments,
+                                    Lookup lookup, GradeScale scale) {
+        // The student's marks per module, by assessment; a later row replaces an earlier one
+        Map<String, Map<String, Double>> marksByModule = new TreeMap<>();
+        for (String[] enrollment : enrollments) {
+            if (enrollment.length < 2) continue;
+            String[] cls = lookup.classRow(enrollment[1]);
+            if (cls != null && cls.length >= 3) marksByModule.computeIfAbsent(cls[2], k -> new HashMap<>());
+        }
+        for (String[] result : results) {
+            if (result.length < 3) continue;
+            String[] assessment = lookup.assessment(result[0]);
+            if (assessment == null || assessment.length < 4) continue;
+            try {
+                double mark = Double.parseDouble(result[2]);
+                marksByModule.computeIfAbsent(assessment[1], k -> new HashMap<>()).put(result[0], mark);
+            } catch (NumberFormatException e) { }
+        }
+
+        List<ModuleLine> lines = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Double>> entry : marksByModule.entrySet()) {
+            String moduleId = entry.getKey();
+            Map<String, Double> marks = entry.getValue();
+            List<String[]> assessments = new ArrayList<>();
+            for (String[] assessment : lookup.moduleAssessments(moduleId)) {
+                if (assessment.length >= 4) assessments.add(assessment);
+            }
+            double[] scales = FinalGrades.scales(assessments);
+            double percentage = 0;
+            int completed = 0;
+            for (int a = 0; a < assessments.size(); a++) {
+                Double mark = marks.get(assessments.get(a)[0]);
+                if (mark == null) continue;
+                percentage += mark * scales[a];
+                completed++;
+            }
+            String[] module = lookup.module(moduleId);
+            String name = module != null && module.length >= 2 ? module[1] : "";
+            String grade = null;
+            double points = Double.NaN;
+            if (completed > 0) {
+                grade = scale.grade(percentage);
+                if (grade == null) grade = "N/A"; else points = scale.points(grade);
+            }
+            lines.add(new ModuleLine(moduleId, name, assessments.size(), completed, percentage, grade, points));
+        }
+        return new Transcript(studentId, lines);
+    }
+
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+}